@@ -0,0 +1,116 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.zalando.logbook.Correlation;
+import org.zalando.logbook.HttpLogWriter;
+import org.zalando.logbook.Logbook;
+import org.zalando.logbook.Precorrelation;
+import org.zalando.logbook.Strategy;
+import org.zalando.logbook.core.DefaultSink;
+import org.zalando.logbook.core.DefaultStrategy;
+import org.zalando.logbook.json.JsonHttpLogFormatter;
+import org.zalando.logbook.servlet.LogbookFilter;
+import ru.yandex.practicum.filmorate.logging.SampledBodyStrategy;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-request overhead of access logging on a `POST /films` exchange with a JSON body of about 1 KB.
+ *
+ * `none` runs the request without the Logbook filter, `full` uses Logbook's default strategy that
+ * logs every body, and `sampled` uses `SampledBodyStrategy` with the default settings. Log lines are
+ * formatted as JSON and then dropped, so the scores cover buffering and formatting but not appender
+ * I/O, which the asynchronous appenders move off the request thread.
+ *
+ * Run with `mvn -Pbenchmark test-compile exec:exec -Dbenchmark.include=AccessLogBenchmark`.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AccessLogBenchmark {
+    private static final byte[] REQUEST_BODY = """
+            {"name": "Film", "description": "%s", "releaseDate": "2000-01-01", "duration": 120,
+             "mpa": {"id": 1}, "genres": [{"id": 1}, {"id": 2}]}
+            """.formatted("Synthetic description ".repeat(8)).getBytes(StandardCharsets.UTF_8);
+    private static final byte[] RESPONSE_BODY = ("[" + "{\"id\": 1, \"name\": \"Film\", \"likes\": 10},".repeat(24)
+            + "{\"id\": 2}]").getBytes(StandardCharsets.UTF_8);
+
+    @Param({"none", "full", "sampled"})
+    private String mode;
+
+    private LogbookFilter filter;
+    private FilterChain chain;
+    private long loggedChars;
+
+    @Setup
+    public void setUp() {
+        chain = (request, response) -> {
+            request.getInputStream().readAllBytes();
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            response.getOutputStream().write(RESPONSE_BODY);
+        };
+
+        Strategy strategy = switch (mode) {
+            case "none" -> null;
+            case "full" -> new DefaultStrategy();
+            case "sampled" -> new SampledBodyStrategy(0.01, true, 400);
+            default -> throw new IllegalArgumentException("Unknown mode: " + mode);
+        };
+        if (strategy != null) {
+            filter = new LogbookFilter(Logbook.builder()
+                    .strategy(strategy)
+                    .sink(new DefaultSink(new JsonHttpLogFormatter(), new DiscardingWriter()))
+                    .build());
+        }
+    }
+
+    @Benchmark
+    public int exchange() throws ServletException, IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/films");
+        request.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        request.setContent(REQUEST_BODY);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        if (filter == null) {
+            chain.doFilter(request, response);
+        } else {
+            filter.doFilter(request, response, chain);
+        }
+        return response.getContentLength() + (int) loggedChars;
+    }
+
+    /**
+     * Counts formatted characters so that formatting cannot be optimized away.
+     */
+    private final class DiscardingWriter implements HttpLogWriter {
+        @Override
+        public void write(Precorrelation precorrelation, String request) {
+            loggedChars += request.length();
+        }
+
+        @Override
+        public void write(Correlation correlation, String response) {
+            loggedChars += response.length();
+        }
+    }
+}
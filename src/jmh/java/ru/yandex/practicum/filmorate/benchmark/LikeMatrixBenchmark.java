@@ -0,0 +1,102 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.yandex.practicum.filmorate.storage.index.AdjacencyUpdate;
+import ru.yandex.practicum.filmorate.storage.index.LikeMatrix;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Recommendation latency on a synthetic like matrix.
+ *
+ * With the default parameters every user likes 10 films, which gives 1M likes in total. Film
+ * popularity is skewed so that a few films are liked by a large share of users, as in real data.
+ *
+ * Run with `mvn -Pbenchmark test-compile exec:exec`.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LikeMatrixBenchmark {
+    private static final int LIMIT = 10;
+    private static final int NEIGHBOURS = 20;
+    private static final int MAX_FAN_OUT = 10_000;
+
+    @Param({"100000"})
+    private int users;
+
+    @Param({"10"})
+    private int likesPerUser;
+
+    @Param({"20000"})
+    private int films;
+
+    private LikeMatrix likeMatrix;
+    private long[] userIds;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(42);
+        likeMatrix = new LikeMatrix();
+        LikeMatrix.Builder builder = likeMatrix.builder();
+
+        for (long userId = 1; userId <= users; userId++) {
+            long[] liked = new long[likesPerUser];
+            for (int idx = 0; idx < likesPerUser; idx++) {
+                liked[idx] = skewedFilmId(random);
+            }
+            Arrays.sort(liked);
+            long previous = -1;
+            for (long filmId : liked) {
+                if (filmId != previous) {
+                    builder.add(userId, filmId);
+                    previous = filmId;
+                }
+            }
+        }
+        builder.publish();
+
+        userIds = random.longs(1024, 1, users + 1L).toArray();
+    }
+
+    @Benchmark
+    public long[] recommendFilms() {
+        long userId = userIds[next++ & (userIds.length - 1)];
+        return likeMatrix.recommendFilms(userId, LIMIT, NEIGHBOURS, MAX_FAN_OUT);
+    }
+
+    /**
+     * Applies the in-memory part of an after-commit refresh: replacing one user's row of liked films.
+     */
+    @Benchmark
+    public long[] refreshLikedFilms() {
+        long userId = userIds[next++ & (userIds.length - 1)];
+        AdjacencyUpdate update = likeMatrix.updateLikedFilms(new long[]{userId});
+        for (long filmId : likeMatrix.getLikedFilms(userId)) {
+            update.add(userId, filmId);
+        }
+        update.apply();
+        return likeMatrix.getLikedFilms(userId);
+    }
+
+    private long skewedFilmId(SplittableRandom random) {
+        double uniform = random.nextDouble();
+        return 1 + (long) (films * uniform * uniform * uniform);
+    }
+}
@@ -0,0 +1,174 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.FilmorateApplication;
+import ru.yandex.practicum.filmorate.dto.film.FilmDto;
+import ru.yandex.practicum.filmorate.mapper.film.FilmMapper;
+import ru.yandex.practicum.filmorate.model.film.Film;
+import ru.yandex.practicum.filmorate.model.user.User;
+import ru.yandex.practicum.filmorate.service.film.FilmService;
+import ru.yandex.practicum.filmorate.storage.db.film.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.db.user.FriendDbStorage;
+import ru.yandex.practicum.filmorate.storage.db.user.UserDbStorage;
+import ru.yandex.practicum.filmorate.support.SyntheticDataset;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the storage, service and mapping hot paths against a seeded in-memory H2 database.
+ *
+ * The application context is started without the web layer, and the database is filled with a
+ * `SyntheticDataset` whose size is set by the parameters below. Write benchmarks add and remove a like
+ * or a friendship of the spare film and user, so the dataset does not drift between iterations.
+ *
+ * Run with `mvn -Pbenchmark test-compile exec:exec -Dbenchmark.include=StorageBenchmark`; the GC
+ * profiler reports allocation rates next to the scores.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StorageBenchmark {
+    private static final int POPULAR_COUNT = 10;
+
+    @Param({"10000"})
+    private int films;
+
+    @Param({"10000"})
+    private int users;
+
+    @Param({"10"})
+    private int likesPerUser;
+
+    @Param({"20"})
+    private int friendsPerUser;
+
+    private ConfigurableApplicationContext context;
+    private FilmDbStorage filmStorage;
+    private UserDbStorage userStorage;
+    private FriendDbStorage friendStorage;
+    private FilmService filmService;
+    private List<Film> popularFilms;
+    private long[] filmIds;
+    private long[] userIds;
+    private long spareFilmId;
+    private long spareUserId;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        context = new SpringApplicationBuilder(FilmorateApplication.class)
+                .web(WebApplicationType.NONE)
+                .run(
+                        "--spring.datasource.url=jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1",
+                        "--logging.level.root=WARN",
+                        "--logging.level.org.zalando.logbook=OFF"
+                );
+        filmStorage = context.getBean(FilmDbStorage.class);
+        userStorage = context.getBean(UserDbStorage.class);
+        friendStorage = context.getBean(FriendDbStorage.class);
+        filmService = context.getBean(FilmService.class);
+
+        SplittableRandom random = new SplittableRandom(42);
+        SyntheticDataset dataset = new SyntheticDataset(films, users, likesPerUser, friendsPerUser);
+        dataset.seed(context.getBean(JdbcTemplate.class), random);
+        spareFilmId = dataset.spareFilmId();
+        spareUserId = dataset.spareUserId();
+
+        // The indexes were built at startup from an empty database.
+        userStorage.loadExistenceIndex();
+        friendStorage.rebuildGraphIndex();
+        filmStorage.rebuildIndexes();
+
+        popularFilms = filmStorage.getPopularFilms(POPULAR_COUNT, null, null);
+        filmIds = random.longs(1024, 1, films + 1L).toArray();
+        userIds = random.longs(1024, 1, users + 1L).toArray();
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Collection<Film> getFilms() {
+        return filmStorage.getFilms();
+    }
+
+    @Benchmark
+    public List<Film> getPopularFilms() {
+        return filmStorage.getPopularFilms(POPULAR_COUNT, null, null);
+    }
+
+    @Benchmark
+    public Optional<Film> getFilmById() {
+        return filmStorage.getFilmById(nextFilmId());
+    }
+
+    @Benchmark
+    public FilmDto getFilmByIdCached() {
+        return filmService.getFilmById(nextFilmId());
+    }
+
+    @Benchmark
+    public List<Long> getCommonFriendsIds() {
+        return friendStorage.getCommonFriendsIds(nextUserId(), nextUserId());
+    }
+
+    @Benchmark
+    public List<User> getFriends() {
+        return friendStorage.getFriends(nextUserId(), false);
+    }
+
+    @Benchmark
+    public List<FilmDto> mapFilmDtos() {
+        return popularFilms.stream()
+                .map(FilmMapper::mapToFilmDto)
+                .toList();
+    }
+
+    @Benchmark
+    public Optional<Film> addLike() {
+        long userId = nextUserId();
+        filmStorage.addLike(spareFilmId, userId);
+        filmStorage.removeLike(spareFilmId, userId);
+        return filmStorage.getFilmById(spareFilmId);
+    }
+
+    @Benchmark
+    public int addFriend() {
+        long userId = nextUserId();
+        friendStorage.addFriend(userId, spareUserId);
+        friendStorage.removeFriend(userId, spareUserId);
+        return friendStorage.getFriendsCount(userId);
+    }
+
+    private long nextFilmId() {
+        return filmIds[next++ & (filmIds.length - 1)];
+    }
+
+    private long nextUserId() {
+        return userIds[next++ & (userIds.length - 1)];
+    }
+}
@@ -0,0 +1,146 @@
+package ru.yandex.practicum.filmorate.loadtest;
+
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Latency percentiles and outcome counts of a load test run, per operation and in total.
+ *
+ * Latencies are in microseconds. The report is saved as a properties file with keys such as
+ * `film.p99`, so runs can be diffed and compared against a baseline: a run fails the comparison when
+ * the p99 or p999 of any operation grows by more than the allowed share, or when any request fails.
+ */
+public final class LatencyReport {
+    static final String TOTAL = "total";
+    private static final double[] PERCENTILES = {50.0, 99.0, 99.9};
+    private static final String[] PERCENTILE_KEYS = {"p50", "p99", "p999"};
+    private static final String[] GATED_KEYS = {"p99", "p999"};
+
+    private final Map<String, Row> rows = new LinkedHashMap<>();
+    private final double durationSeconds;
+
+    public LatencyReport(double durationSeconds) {
+        this.durationSeconds = durationSeconds;
+    }
+
+    public void add(String name, Histogram histogram, long rejected, long failed) {
+        rows.put(name, new Row(histogram.copy(), rejected, failed));
+    }
+
+    public void addTotal() {
+        Histogram total = null;
+        long rejected = 0;
+        long failed = 0;
+        for (Row row : rows.values()) {
+            if (total == null) {
+                total = row.histogram().copy();
+            } else {
+                total.add(row.histogram());
+            }
+            rejected += row.rejected();
+            failed += row.failed();
+        }
+        if (total != null) {
+            rows.put(TOTAL, new Row(total, rejected, failed));
+        }
+    }
+
+    public String format() {
+        StringBuilder table = new StringBuilder(String.format(Locale.ROOT,
+                "%-10s %10s %10s %8s %8s %10s %10s %10s %10s%n",
+                "operation", "requests", "rps", "4xx", "failed", "p50 us", "p99 us", "p999 us", "max us"));
+        rows.forEach((name, row) -> {
+            Histogram histogram = row.histogram();
+            table.append(String.format(Locale.ROOT, "%-10s %10d %10.1f %8d %8d %10d %10d %10d %10d%n",
+                    name,
+                    histogram.getTotalCount(),
+                    histogram.getTotalCount() / durationSeconds,
+                    row.rejected(),
+                    row.failed(),
+                    histogram.getValueAtPercentile(PERCENTILES[0]),
+                    histogram.getValueAtPercentile(PERCENTILES[1]),
+                    histogram.getValueAtPercentile(PERCENTILES[2]),
+                    histogram.getMaxValue()));
+        });
+        return table.toString();
+    }
+
+    public void save(Path path, String description) throws IOException {
+        Properties properties = new Properties();
+        rows.forEach((name, row) -> {
+            Histogram histogram = row.histogram();
+            properties.setProperty(name + ".requests", String.valueOf(histogram.getTotalCount()));
+            properties.setProperty(name + ".rps",
+                    String.format(Locale.ROOT, "%.1f", histogram.getTotalCount() / durationSeconds));
+            properties.setProperty(name + ".rejected", String.valueOf(row.rejected()));
+            properties.setProperty(name + ".failed", String.valueOf(row.failed()));
+            for (int idx = 0; idx < PERCENTILES.length; idx++) {
+                properties.setProperty(name + "." + PERCENTILE_KEYS[idx],
+                        String.valueOf(histogram.getValueAtPercentile(PERCENTILES[idx])));
+            }
+            properties.setProperty(name + ".max", String.valueOf(histogram.getMaxValue()));
+        });
+
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        try (Writer writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            properties.store(writer, description);
+        }
+    }
+
+    /**
+     * Returns the reasons why this run is worse than the saved `baseline`; an empty list means the run
+     * passes.
+     */
+    public List<String> compare(Path baseline, double maxRegression) throws IOException {
+        Properties expected = new Properties();
+        try (Reader reader = Files.newBufferedReader(baseline, StandardCharsets.UTF_8)) {
+            expected.load(reader);
+        }
+
+        List<String> regressions = new ArrayList<>();
+        rows.forEach((name, row) -> {
+            if (row.failed() > 0) {
+                regressions.add(String.format(Locale.ROOT, "%s: %d failed requests", name, row.failed()));
+            }
+            for (String key : GATED_KEYS) {
+                String baselineValue = expected.getProperty(name + "." + key);
+                if (baselineValue == null) {
+                    continue;
+                }
+                long before = Long.parseLong(baselineValue);
+                long after = row.histogram().getValueAtPercentile(percentileOf(key));
+                if (after > before * (1 + maxRegression)) {
+                    regressions.add(String.format(Locale.ROOT, "%s.%s: %d us -> %d us (+%.0f%%)",
+                            name, key, before, after, (after - before) * 100.0 / Math.max(before, 1)));
+                }
+            }
+        });
+        return regressions;
+    }
+
+    private static double percentileOf(String key) {
+        for (int idx = 0; idx < PERCENTILE_KEYS.length; idx++) {
+            if (PERCENTILE_KEYS[idx].equals(key)) {
+                return PERCENTILES[idx];
+            }
+        }
+        throw new IllegalArgumentException("Unknown percentile: " + key);
+    }
+
+    private record Row(Histogram histogram, long rejected, long failed) {
+    }
+}
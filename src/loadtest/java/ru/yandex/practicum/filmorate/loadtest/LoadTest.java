@@ -0,0 +1,228 @@
+package ru.yandex.practicum.filmorate.loadtest;
+
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.FilmorateApplication;
+import ru.yandex.practicum.filmorate.storage.db.film.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.db.user.FriendDbStorage;
+import ru.yandex.practicum.filmorate.storage.db.user.UserDbStorage;
+import ru.yandex.practicum.filmorate.support.SyntheticDataset;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drives the REST API of an embedded application with a weighted mix of requests and reports latency
+ * percentiles.
+ *
+ * The application starts on a random port against the configured H2 database. An empty database is
+ * filled with a `SyntheticDataset`; a file database that already holds films is reused as is. Each
+ * worker thread picks operations by weight and sends them one at a time. With a target rate, requests
+ * are scheduled at fixed intervals and latency is measured from the scheduled start, so a stalled
+ * server is not hidden by workers that simply send less. Results of the warm-up are discarded.
+ *
+ * Run with `mvn -Ploadtest test-compile exec:exec`; see `loadtest.properties` for the settings. The
+ * process exits with status 1 when the run regresses against `loadtest.baseline`.
+ */
+@Slf4j
+public final class LoadTest {
+    private static final long MAX_LATENCY_MICROS = TimeUnit.MINUTES.toMicros(1);
+    private static final int SIGNIFICANT_DIGITS = 3;
+
+    private final WorkloadProfile profile;
+    private final Map<Operation, Stats> stats = new EnumMap<>(Operation.class);
+    private final Operation[] operations;
+    private final int[] cumulativeWeights;
+    private final HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+    private volatile boolean running = true;
+    private URI baseUri;
+    private int films;
+    private int users;
+
+    private LoadTest(WorkloadProfile profile) {
+        this.profile = profile;
+        Map<Operation, Integer> mix = profile.mix();
+        operations = mix.keySet().toArray(Operation[]::new);
+        cumulativeWeights = new int[operations.length];
+        int total = 0;
+        for (int idx = 0; idx < operations.length; idx++) {
+            total += mix.get(operations[idx]);
+            cumulativeWeights[idx] = total;
+            stats.put(operations[idx], new Stats());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        WorkloadProfile profile = WorkloadProfile.load();
+        LoadTest loadTest = new LoadTest(profile);
+        int status;
+        try (ConfigurableApplicationContext context = loadTest.startApplication()) {
+            status = loadTest.run();
+        }
+        System.exit(status);
+    }
+
+    private ConfigurableApplicationContext startApplication() {
+        List<String> args = new ArrayList<>();
+        args.add("--server.port=0");
+        args.add("--spring.datasource.url=" + profile.datasourceUrl());
+        profile.applicationProperties().forEach((name, value) -> args.add("--" + name + "=" + value));
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(FilmorateApplication.class)
+                .run(args.toArray(String[]::new));
+
+        JdbcTemplate jdbc = context.getBean(JdbcTemplate.class);
+        long maxFilmId = maxId(jdbc, "films");
+        if (maxFilmId == 0) {
+            SyntheticDataset dataset = new SyntheticDataset(profile.films(), profile.users(),
+                    profile.likesPerUser(), profile.friendsPerUser());
+            long started = System.nanoTime();
+            dataset.seed(jdbc, new SplittableRandom(42));
+            context.getBean(UserDbStorage.class).loadExistenceIndex();
+            context.getBean(FriendDbStorage.class).rebuildGraphIndex();
+            context.getBean(FilmDbStorage.class).rebuildIndexes();
+            log.info("Dataset seeded in {} ms", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+            films = profile.films();
+            users = profile.users();
+        } else {
+            log.info("Reusing existing database: maxFilmId={}", maxFilmId);
+            films = (int) maxFilmId;
+            users = (int) maxId(jdbc, "users");
+        }
+
+        int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+        baseUri = URI.create("http://localhost:" + port);
+        return context;
+    }
+
+    private int run() throws InterruptedException, IOException {
+        log.info("Load test started: {}", profile);
+        SplittableRandom seed = new SplittableRandom(7);
+        List<Thread> workers = new ArrayList<>();
+        for (int idx = 0; idx < profile.threads(); idx++) {
+            SplittableRandom random = seed.split();
+            workers.add(Thread.ofPlatform()
+                    .name("load-test-" + idx)
+                    .daemon()
+                    .start(() -> work(random)));
+        }
+
+        TimeUnit.SECONDS.sleep(profile.warmupSeconds());
+        stats.values().forEach(Stats::reset);
+        long started = System.nanoTime();
+        TimeUnit.SECONDS.sleep(profile.durationSeconds());
+        running = false;
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        double elapsedSeconds = (System.nanoTime() - started) / 1e9;
+
+        LatencyReport report = new LatencyReport(elapsedSeconds);
+        stats.forEach((operation, operationStats) -> report.add(operation.key(),
+                operationStats.recorder.getIntervalHistogram(),
+                operationStats.rejected.sum(),
+                operationStats.failed.sum()));
+        report.addTotal();
+        System.out.print(report.format());
+        report.save(profile.report(), profile + ", finished " + Instant.now());
+        log.info("Report saved to {}", profile.report());
+
+        Path baseline = profile.baseline();
+        if (baseline == null) {
+            return 0;
+        }
+        List<String> regressions = report.compare(baseline, profile.maxRegression());
+        if (regressions.isEmpty()) {
+            log.info("No regressions against {}", baseline);
+            return 0;
+        }
+        regressions.forEach(regression -> log.error("Regression: {}", regression));
+        return 1;
+    }
+
+    private void work(SplittableRandom random) {
+        long intervalNanos = profile.rate() > 0
+                ? TimeUnit.SECONDS.toNanos(profile.threads()) / profile.rate()
+                : 0;
+        long scheduled = System.nanoTime();
+        while (running) {
+            Operation operation = nextOperation(random);
+            HttpRequest request = operation.request(baseUri, random, films, users);
+            long started;
+            if (intervalNanos > 0) {
+                scheduled += intervalNanos;
+                LockSupport.parkNanos(scheduled - System.nanoTime());
+                started = scheduled;
+            } else {
+                started = System.nanoTime();
+            }
+
+            Stats operationStats = stats.get(operation);
+            try {
+                int status = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+                if (status >= 500) {
+                    operationStats.failed.increment();
+                } else if (status >= 400) {
+                    operationStats.rejected.increment();
+                }
+            } catch (IOException e) {
+                operationStats.failed.increment();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            long latencyMicros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - started);
+            operationStats.recorder.recordValue(Math.min(latencyMicros, MAX_LATENCY_MICROS));
+        }
+    }
+
+    private Operation nextOperation(SplittableRandom random) {
+        int ticket = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (int idx = 0; idx < cumulativeWeights.length; idx++) {
+            if (ticket < cumulativeWeights[idx]) {
+                return operations[idx];
+            }
+        }
+        throw new IllegalStateException("Ticket out of range: " + ticket);
+    }
+
+    private static long maxId(JdbcTemplate jdbc, String table) {
+        return Optional.ofNullable(jdbc.queryForObject("SELECT MAX(id) FROM " + table, Long.class))
+                .orElse(0L);
+    }
+
+    private static final class Stats {
+        private final Recorder recorder = new Recorder(MAX_LATENCY_MICROS, SIGNIFICANT_DIGITS);
+        private final LongAdder rejected = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+
+        private void reset() {
+            Histogram discarded = recorder.getIntervalHistogram();
+            log.debug("Discarded {} warm-up samples", discarded.getTotalCount());
+            rejected.reset();
+            failed.reset();
+        }
+    }
+}
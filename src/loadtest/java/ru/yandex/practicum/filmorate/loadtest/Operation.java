@@ -0,0 +1,90 @@
+package ru.yandex.practicum.filmorate.loadtest;
+
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.util.SplittableRandom;
+
+/**
+ * REST calls that make up a load test workload.
+ *
+ * Reads pick random films and users of the seeded dataset. Likes and friendships are added and
+ * removed for random pairs, so the amount of churn stays roughly constant over a run; removing a like
+ * or a friendship that does not exist is an ordinary outcome and is not counted as a failure.
+ */
+public enum Operation {
+    POPULAR("popular", "GET") {
+        @Override
+        String path(SplittableRandom random, int films, int users) {
+            return "/films/popular?count=10";
+        }
+    },
+    FILM("film", "GET") {
+        @Override
+        String path(SplittableRandom random, int films, int users) {
+            return "/films/" + randomId(random, films);
+        }
+    },
+    FRIENDS("friends", "GET") {
+        @Override
+        String path(SplittableRandom random, int films, int users) {
+            return "/users/" + randomId(random, users) + "/friends";
+        }
+    },
+    LIKE("like", "PUT") {
+        @Override
+        String path(SplittableRandom random, int films, int users) {
+            return "/films/" + randomId(random, films) + "/like/" + randomId(random, users);
+        }
+    },
+    UNLIKE("unlike", "DELETE") {
+        @Override
+        String path(SplittableRandom random, int films, int users) {
+            return "/films/" + randomId(random, films) + "/like/" + randomId(random, users);
+        }
+    },
+    FRIEND("friend", "PUT") {
+        @Override
+        String path(SplittableRandom random, int films, int users) {
+            return friendshipPath(random, users);
+        }
+    },
+    UNFRIEND("unfriend", "DELETE") {
+        @Override
+        String path(SplittableRandom random, int films, int users) {
+            return friendshipPath(random, users);
+        }
+    };
+
+    private final String key;
+    private final String method;
+
+    Operation(String key, String method) {
+        this.key = key;
+        this.method = method;
+    }
+
+    public String key() {
+        return key;
+    }
+
+    abstract String path(SplittableRandom random, int films, int users);
+
+    HttpRequest request(URI baseUri, SplittableRandom random, int films, int users) {
+        return HttpRequest.newBuilder(baseUri.resolve(path(random, films, users)))
+                .method(method, HttpRequest.BodyPublishers.noBody())
+                .build();
+    }
+
+    private static long randomId(SplittableRandom random, int bound) {
+        return 1 + random.nextInt(bound);
+    }
+
+    private static String friendshipPath(SplittableRandom random, int users) {
+        long userId = randomId(random, users);
+        long friendId = randomId(random, users - 1);
+        if (friendId >= userId) {
+            friendId++;
+        }
+        return "/users/" + userId + "/friends/" + friendId;
+    }
+}
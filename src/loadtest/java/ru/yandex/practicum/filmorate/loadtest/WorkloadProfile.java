@@ -0,0 +1,155 @@
+package ru.yandex.practicum.filmorate.loadtest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Settings of a load test run: dataset size, database, concurrency, request mix and report paths.
+ *
+ * Values are read from `loadtest.properties` on the classpath, then from the file named by the
+ * `loadtest.profile` system property, and finally from non-blank `loadtest.*` system properties, each
+ * source overriding the previous one. Properties prefixed with `loadtest.app.` are passed to the
+ * application with the prefix removed.
+ */
+public final class WorkloadProfile {
+    private static final String PREFIX = "loadtest.";
+    private static final String APP_PREFIX = PREFIX + "app.";
+    private static final String MIX_PREFIX = PREFIX + "mix.";
+
+    private final Properties properties;
+
+    private WorkloadProfile(Properties properties) {
+        this.properties = properties;
+    }
+
+    public static WorkloadProfile load() throws IOException {
+        Properties properties = new Properties();
+        try (InputStream defaults = WorkloadProfile.class.getResourceAsStream("/loadtest.properties")) {
+            if (defaults != null) {
+                properties.load(defaults);
+            }
+        }
+
+        String profile = System.getProperty(PREFIX + "profile", "");
+        if (!profile.isBlank()) {
+            try (Reader reader = Files.newBufferedReader(Path.of(profile), StandardCharsets.UTF_8)) {
+                properties.load(reader);
+            }
+        }
+
+        System.getProperties().stringPropertyNames().stream()
+                .filter(name -> name.startsWith(PREFIX) && !System.getProperty(name).isBlank())
+                .forEach(name -> properties.setProperty(name, System.getProperty(name)));
+        return new WorkloadProfile(properties);
+    }
+
+    public int films() {
+        return getInt("films");
+    }
+
+    public int users() {
+        return getInt("users");
+    }
+
+    public int likesPerUser() {
+        return getInt("likes-per-user");
+    }
+
+    public int friendsPerUser() {
+        return getInt("friends-per-user");
+    }
+
+    public String datasourceUrl() {
+        return get("datasource-url");
+    }
+
+    public int threads() {
+        return getInt("threads");
+    }
+
+    public int warmupSeconds() {
+        return getInt("warmup-seconds");
+    }
+
+    public int durationSeconds() {
+        return getInt("duration-seconds");
+    }
+
+    /**
+     * Target request rate across all threads, or `0` to send the next request as soon as the previous
+     * one completes.
+     */
+    public int rate() {
+        return getInt("rate");
+    }
+
+    public Path report() {
+        return Path.of(get("report"));
+    }
+
+    public Path baseline() {
+        String baseline = get("baseline");
+        return baseline.isBlank() ? null : Path.of(baseline);
+    }
+
+    public double maxRegression() {
+        return Double.parseDouble(get("max-regression"));
+    }
+
+    public Map<Operation, Integer> mix() {
+        Map<Operation, Integer> mix = new EnumMap<>(Operation.class);
+        for (Operation operation : Operation.values()) {
+            String weight = properties.getProperty(MIX_PREFIX + operation.key(), "0").trim();
+            int value = Integer.parseInt(weight);
+            if (value < 0) {
+                throw new IllegalArgumentException("Mix weight must not be negative: " + operation.key());
+            }
+            if (value > 0) {
+                mix.put(operation, value);
+            }
+        }
+        if (mix.isEmpty()) {
+            throw new IllegalArgumentException("Workload mix must contain at least one operation");
+        }
+        return mix;
+    }
+
+    public Map<String, Object> applicationProperties() {
+        Map<String, Object> application = new LinkedHashMap<>();
+        properties.stringPropertyNames().stream()
+                .filter(name -> name.startsWith(APP_PREFIX))
+                .sorted()
+                .forEach(name -> application.put(name.substring(APP_PREFIX.length()), properties.getProperty(name)));
+        return application;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT,
+                "films=%d, users=%d, likesPerUser=%d, friendsPerUser=%d, threads=%d, warmup=%ds, "
+                        + "duration=%ds, rate=%s, mix=%s",
+                films(), users(), likesPerUser(), friendsPerUser(), threads(), warmupSeconds(),
+                durationSeconds(), rate() > 0 ? rate() + "/s" : "unbounded", mix());
+    }
+
+    private String get(String name) {
+        String value = properties.getProperty(PREFIX + name);
+        if (value == null) {
+            throw new IllegalArgumentException("Missing load test property: " + PREFIX + name);
+        }
+        return value.trim();
+    }
+
+    private int getInt(String name) {
+        return Integer.parseInt(get(name));
+    }
+}
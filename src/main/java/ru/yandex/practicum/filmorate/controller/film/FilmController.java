@@ -4,6 +4,8 @@ import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
@@ -14,11 +16,18 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import ru.yandex.practicum.filmorate.dto.film.FilmDto;
+import ru.yandex.practicum.filmorate.dto.film.FilmImportResultDto;
 import ru.yandex.practicum.filmorate.dto.film.requests.NewFilmRequest;
 import ru.yandex.practicum.filmorate.dto.film.requests.UpdateFilmRequest;
+import ru.yandex.practicum.filmorate.model.EntityVersion;
 import ru.yandex.practicum.filmorate.service.film.FilmService;
+import ru.yandex.practicum.filmorate.util.ETagUtil;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
 
 @Slf4j
@@ -30,26 +39,55 @@ public class FilmController {
     private static final String LIKES_ENDPOINT = "/{film-id}/like";
 
     @GetMapping
+    public ResponseEntity<StreamingResponseBody> getFilms(@RequestParam(required = false) Long after) {
+        if (after != null) {
+            throw new IllegalArgumentException("Parameter 'after' requires 'limit'");
+        }
+        log.debug("Streaming all films.");
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(filmService::writeFilms);
+    }
+
+    @GetMapping(params = "limit")
     @ResponseStatus(HttpStatus.OK)
-    public List<FilmDto> getFilms() {
-        log.info("Fetching all films.");
-        return filmService.getFilms();
+    public List<FilmDto> getFilmsPage(
+            @RequestParam int limit,
+            @RequestParam(defaultValue = "0") long after
+    ) {
+        log.debug("Fetching films page: after={}, limit={}", after, limit);
+        return filmService.getFilmsPage(after, limit);
     }
 
     @GetMapping("/{film-id}")
-    @ResponseStatus(HttpStatus.OK)
-    public FilmDto getFilmById(@PathVariable("film-id") Long filmId) {
-        log.info("Fetching film with id {}", filmId);
-        return filmService.getFilmById(filmId);
+    public ResponseEntity<FilmDto> getFilmById(@PathVariable("film-id") Long filmId, WebRequest request) {
+        log.debug("Fetching film with id {}", filmId);
+        String eTag = filmService.getFilmETag(filmId);
+        if (request.checkNotModified(eTag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build();
+        }
+        return ResponseEntity.ok()
+                .eTag(eTag)
+                .body(filmService.getFilmById(filmId));
     }
 
     @PostMapping
     @ResponseStatus(HttpStatus.CREATED)
     public FilmDto createFilm(@Valid @RequestBody NewFilmRequest filmRequest) {
-        log.info("Creating new film: {}", filmRequest);
+        log.debug("Creating new film: {}", filmRequest);
         return filmService.createFilm(filmRequest);
     }
 
+    @PostMapping(
+            value = "/import",
+            consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE}
+    )
+    @ResponseStatus(HttpStatus.OK)
+    public FilmImportResultDto importFilms(InputStream body) throws IOException {
+        log.debug("Importing films.");
+        return filmService.importFilms(body);
+    }
+
     @PutMapping
     @ResponseStatus(HttpStatus.OK)
     public FilmDto updateFilm(@RequestBody UpdateFilmRequest request) {
@@ -57,28 +95,49 @@ public class FilmController {
         if (filmId == null) {
             throw new IllegalArgumentException("Film ID is required");
         }
-        log.info("Updating film with id: {}", filmId);
+        log.debug("Updating film with id: {}", filmId);
         return filmService.updateFilm(filmId, request);
     }
 
     @PutMapping(LIKES_ENDPOINT + "/{user-id}")
     @ResponseStatus(HttpStatus.OK)
     public void addLike(@PathVariable("film-id") Long filmId, @PathVariable("user-id") Long userId) {
-        log.info("Adding like: filmId={}, userId={}", filmId, userId);
+        log.debug("Adding like: filmId={}, userId={}", filmId, userId);
         filmService.addLike(filmId, userId);
     }
 
     @DeleteMapping(LIKES_ENDPOINT + "/{user-id}")
     @ResponseStatus(HttpStatus.OK)
     public void removeLike(@PathVariable("film-id") Long filmId, @PathVariable("user-id") Long userId) {
-        log.info("Removing like: filmId={}, userId={}", filmId, userId);
+        log.debug("Removing like: filmId={}, userId={}", filmId, userId);
         filmService.removeLike(filmId, userId);
     }
 
-    @GetMapping("/popular")
+    @GetMapping("/search")
     @ResponseStatus(HttpStatus.OK)
-    public List<FilmDto> getPopularFilms(@RequestParam(defaultValue = "10") int count) {
-        log.info("Fetching popular films.");
-        return filmService.getPopularFilms(count);
+    public List<FilmDto> searchFilms(
+            @RequestParam("q") String query,
+            @RequestParam(defaultValue = "10") int limit
+    ) {
+        log.debug("Searching films: q={}, limit={}", query, limit);
+        return filmService.searchFilms(query, limit);
+    }
+
+    @GetMapping("/popular")
+    public ResponseEntity<List<FilmDto>> getPopularFilms(
+            @RequestParam(defaultValue = "10") int count,
+            @RequestParam(required = false) Long genreId,
+            @RequestParam(required = false) Integer year,
+            WebRequest request
+    ) {
+        log.debug("Fetching popular films: count={}, genreId={}, year={}", count, genreId, year);
+        List<EntityVersion> versions = filmService.getPopularFilmVersions(count, genreId, year);
+        String eTag = ETagUtil.forList("films", versions);
+        if (request.checkNotModified(eTag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build();
+        }
+        return ResponseEntity.ok()
+                .eTag(eTag)
+                .body(filmService.getFilms(versions));
     }
 }
\ No newline at end of file
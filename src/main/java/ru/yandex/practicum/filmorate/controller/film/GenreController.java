@@ -23,14 +23,14 @@ public class GenreController {
     @GetMapping
     @ResponseStatus(HttpStatus.OK)
     public List<GenreDto> getAllGenres() {
-        log.info("Fetching all genres.");
+        log.debug("Fetching all genres.");
         return filmService.getAllGenres();
     }
 
     @GetMapping("/{genre-id}")
     @ResponseStatus(HttpStatus.OK)
     public GenreDto getGenreById(@PathVariable("genre-id") Long genreId) {
-        log.info("Fetching genre by id: {}", genreId);
+        log.debug("Fetching genre by id: {}", genreId);
         return filmService.getGenreById(genreId);
     }
 }
\ No newline at end of file
@@ -23,14 +23,14 @@ public class MpaController {
     @GetMapping
     @ResponseStatus(HttpStatus.OK)
     public Collection<MpaDto> getAllMpa() {
-        log.info("Fetching all MPAs.");
+        log.debug("Fetching all MPAs.");
         return filmService.getAllMpa();
     }
 
     @GetMapping("/{mpa-id}")
     @ResponseStatus(HttpStatus.OK)
     public MpaDto getMpaById(@PathVariable("mpa-id") Long mpaId) {
-        log.info("Fetching MPA by id: {}", mpaId);
+        log.debug("Fetching MPA by id: {}", mpaId);
         return filmService.getMpaById(mpaId);
     }
 }
\ No newline at end of file
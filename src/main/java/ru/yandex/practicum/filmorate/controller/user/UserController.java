@@ -3,6 +3,8 @@ package ru.yandex.practicum.filmorate.controller.user;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
@@ -13,11 +15,16 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import ru.yandex.practicum.filmorate.dto.user.requests.NewUserRequest;
 import ru.yandex.practicum.filmorate.dto.user.requests.UpdateUserRequest;
+import ru.yandex.practicum.filmorate.dto.film.FilmDto;
 import ru.yandex.practicum.filmorate.dto.user.UserDto;
+import ru.yandex.practicum.filmorate.service.film.FilmService;
 import ru.yandex.practicum.filmorate.service.user.FriendService;
 import ru.yandex.practicum.filmorate.service.user.UserService;
+import ru.yandex.practicum.filmorate.util.ETagUtil;
 
 import java.util.List;
 
@@ -28,26 +35,46 @@ import java.util.List;
 public class UserController {
     private final UserService userService;
     private final FriendService friendService;
+    private final FilmService filmService;
     private static final String FRIENDS_ENDPOINT = "/{user-id}/friends";
 
     @GetMapping
+    public ResponseEntity<StreamingResponseBody> getUsers(@RequestParam(required = false) Long after) {
+        if (after != null) {
+            throw new IllegalArgumentException("Parameter 'after' requires 'limit'");
+        }
+        log.debug("Streaming all users.");
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(userService::writeUsers);
+    }
+
+    @GetMapping(params = "limit")
     @ResponseStatus(HttpStatus.OK)
-    public List<UserDto> getUsers() {
-        log.info("Fetching all users.");
-        return userService.getUsers();
+    public List<UserDto> getUsersPage(
+            @RequestParam int limit,
+            @RequestParam(defaultValue = "0") long after
+    ) {
+        log.debug("Fetching users page: after={}, limit={}", after, limit);
+        return userService.getUsersPage(after, limit);
     }
 
     @GetMapping("/{user-id}")
-    @ResponseStatus(HttpStatus.OK)
-    public UserDto getUserById(@PathVariable("user-id") Long userId) {
-        log.info("Fetching user with id: {}", userId);
-        return userService.getUserById(userId);
+    public ResponseEntity<UserDto> getUserById(@PathVariable("user-id") Long userId, WebRequest request) {
+        log.debug("Fetching user with id: {}", userId);
+        String eTag = userService.getUserETag(userId);
+        if (request.checkNotModified(eTag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build();
+        }
+        return ResponseEntity.ok()
+                .eTag(eTag)
+                .body(userService.getUserById(userId));
     }
 
     @PostMapping
     @ResponseStatus(HttpStatus.CREATED)
     public UserDto createUser(@RequestBody NewUserRequest userRequest) {
-        log.info("Creating new user: {}", userRequest);
+        log.debug("Creating new user: {}", userRequest);
         return userService.createUser(userRequest);
     }
 
@@ -58,7 +85,7 @@ public class UserController {
         if (userId == null) {
             throw new IllegalArgumentException("User ID is required");
         }
-        log.info("Updating user with id: {}", userId);
+        log.debug("Updating user with id: {}", userId);
         return userService.updateUser(userId, request);
     }
 
@@ -68,7 +95,7 @@ public class UserController {
             @PathVariable("user-id") Long userId,
             @PathVariable("friend-id") Long friendId
     ) {
-        log.info("Adding friend: friendId={}, userId={}", friendId, userId);
+        log.debug("Adding friend: friendId={}, userId={}", friendId, userId);
         friendService.addFriend(userId, friendId);
     }
 
@@ -78,18 +105,24 @@ public class UserController {
             @PathVariable("user-id") Long userId,
             @PathVariable("friend-id") Long friendId
     ) {
-        log.info("Deleting friend: friendId={}, userId={}", friendId, userId);
+        log.debug("Deleting friend: friendId={}, userId={}", friendId, userId);
         friendService.removeFriend(userId, friendId);
     }
 
     @GetMapping(FRIENDS_ENDPOINT)
-    @ResponseStatus(HttpStatus.OK)
-    public List<UserDto> getFriends(
+    public ResponseEntity<List<UserDto>> getFriends(
             @PathVariable("user-id") Long userId,
-            @RequestParam(defaultValue = "true") boolean onlyConfirmed
+            @RequestParam(defaultValue = "true") boolean onlyConfirmed,
+            WebRequest request
     ) {
-        log.info("Fetching friends for user with id: {}", userId);
-        return friendService.getFriends(userId, onlyConfirmed);
+        log.debug("Fetching friends for user with id: {}", userId);
+        String eTag = ETagUtil.forList("users", friendService.getFriendVersions(userId, onlyConfirmed));
+        if (request.checkNotModified(eTag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build();
+        }
+        return ResponseEntity.ok()
+                .eTag(eTag)
+                .body(friendService.getFriends(userId, onlyConfirmed));
     }
 
     @GetMapping(FRIENDS_ENDPOINT + "/common/{other-user-id}")
@@ -98,8 +131,34 @@ public class UserController {
             @PathVariable("user-id") Long userId,
             @PathVariable("other-user-id") Long otherUserId
     ) {
-        log.info("Fetching common friends for users with id: {} and {}", userId, otherUserId);
+        log.debug("Fetching common friends for users with id: {} and {}", userId, otherUserId);
         return friendService.getCommonFriends(userId, otherUserId);
     }
-}
 
+    @GetMapping(FRIENDS_ENDPOINT + "/count")
+    @ResponseStatus(HttpStatus.OK)
+    public int getFriendsCount(@PathVariable("user-id") Long userId) {
+        log.debug("Fetching friends count for user with id: {}", userId);
+        return friendService.getFriendsCount(userId);
+    }
+
+    @GetMapping(FRIENDS_ENDPOINT + "/recommendations")
+    @ResponseStatus(HttpStatus.OK)
+    public List<UserDto> getFriendRecommendations(
+            @PathVariable("user-id") Long userId,
+            @RequestParam(defaultValue = "10") int limit
+    ) {
+        log.debug("Fetching friend recommendations for user with id: {}, limit={}", userId, limit);
+        return friendService.getFriendRecommendations(userId, limit);
+    }
+
+    @GetMapping("/{user-id}/recommendations")
+    @ResponseStatus(HttpStatus.OK)
+    public List<FilmDto> getRecommendations(
+            @PathVariable("user-id") Long userId,
+            @RequestParam(defaultValue = "10") int limit
+    ) {
+        log.debug("Fetching film recommendations for user with id: {}, limit={}", userId, limit);
+        return filmService.getRecommendations(userId, limit);
+    }
+}
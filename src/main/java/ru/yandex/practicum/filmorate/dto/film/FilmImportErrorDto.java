@@ -0,0 +1,14 @@
+package ru.yandex.practicum.filmorate.dto.film;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.experimental.FieldDefaults;
+
+@Data
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class FilmImportErrorDto {
+    long record;
+    String error;
+}
@@ -0,0 +1,18 @@
+package ru.yandex.practicum.filmorate.dto.film;
+
+import lombok.AccessLevel;
+import lombok.Data;
+import lombok.experimental.FieldDefaults;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class FilmImportResultDto {
+    long received;
+    long imported;
+    long failed;
+    boolean aborted;
+    List<FilmImportErrorDto> errors = new ArrayList<>();
+}
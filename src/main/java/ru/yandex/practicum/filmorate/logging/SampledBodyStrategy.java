@@ -0,0 +1,75 @@
+package ru.yandex.practicum.filmorate.logging;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.zalando.logbook.Correlation;
+import org.zalando.logbook.HttpRequest;
+import org.zalando.logbook.HttpResponse;
+import org.zalando.logbook.Precorrelation;
+import org.zalando.logbook.Sink;
+import org.zalando.logbook.Strategy;
+
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Logbook strategy that writes one access log entry per exchange and includes bodies only when needed.
+ *
+ * Every exchange is logged with its method, URI, status, duration and headers once the response is
+ * complete. Bodies are included for responses with a status of at least `minimumStatus`, if
+ * `errorBodies` is set, and for a random `bodySampleRate` share of the other exchanges. Skipped bodies
+ * are buffered but never formatted; with both options off they are not buffered either.
+ */
+@Component
+@ConditionalOnProperty(name = "filmorate.access-log.mode", havingValue = "sampled", matchIfMissing = true)
+public class SampledBodyStrategy implements Strategy {
+    private final double bodySampleRate;
+    private final boolean errorBodies;
+    private final int minimumStatus;
+
+    public SampledBodyStrategy(
+            @Value("${filmorate.access-log.body-sample-rate:0.01}") double bodySampleRate,
+            @Value("${filmorate.access-log.error-bodies:true}") boolean errorBodies,
+            @Value("${filmorate.access-log.minimum-status:400}") int minimumStatus
+    ) {
+        if (bodySampleRate < 0 || bodySampleRate > 1) {
+            throw new IllegalArgumentException("Body sample rate must be between 0 and 1: " + bodySampleRate);
+        }
+        this.bodySampleRate = bodySampleRate;
+        this.errorBodies = errorBodies;
+        this.minimumStatus = minimumStatus;
+    }
+
+    @Override
+    public HttpRequest process(HttpRequest request) throws IOException {
+        return buffersBodies() ? request.withBody() : request.withoutBody();
+    }
+
+    @Override
+    public void write(Precorrelation precorrelation, HttpRequest request, Sink sink) {
+        // The request is logged together with its response.
+    }
+
+    @Override
+    public HttpResponse process(HttpRequest request, HttpResponse response) throws IOException {
+        return buffersBodies() ? response.withBody() : response.withoutBody();
+    }
+
+    @Override
+    public void write(Correlation correlation, HttpRequest request, HttpResponse response, Sink sink)
+            throws IOException {
+        boolean withBodies = errorBodies && response.getStatus() >= minimumStatus
+                || bodySampleRate > 0 && ThreadLocalRandom.current().nextDouble() < bodySampleRate;
+        if (withBodies) {
+            sink.write(correlation, request, response);
+        } else {
+            sink.write(correlation, request.withoutBody(), response.withoutBody());
+        }
+    }
+
+    private boolean buffersBodies() {
+        // Whether the response will be an error is not known in advance, so error bodies need buffering.
+        return errorBodies || bodySampleRate > 0;
+    }
+}
@@ -0,0 +1,20 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.experimental.FieldDefaults;
+
+/**
+ * Represents the current version of a stored film or user.
+ *
+ * This class includes the entity's ID and its version, which is incremented on every write to the entity.
+ * It uses the `@Data` annotation to automatically generate boilerplate code like getters, setters, and constructors.
+ */
+@Data
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class EntityVersion {
+    Long id;
+    Long version;
+}
@@ -0,0 +1,20 @@
+package ru.yandex.practicum.filmorate.model.film;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.experimental.FieldDefaults;
+
+/**
+ * Represents a single like given by a user to a film.
+ *
+ * This class includes the film's ID and the ID of the user who liked it.
+ * It uses the `@Data` annotation to automatically generate boilerplate code like getters, setters, and constructors.
+ */
+@Data
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class Like {
+    Long filmId;
+    Long userId;
+}
@@ -0,0 +1,19 @@
+package ru.yandex.practicum.filmorate.service.film;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.dto.film.FilmDto;
+import ru.yandex.practicum.filmorate.storage.cache.ReadThroughCache;
+
+/**
+ * Cache of hydrated films returned by `GET /films/{id}`.
+ *
+ * Cached DTOs are shared between requests and must not be modified.
+ */
+@Component
+public class FilmDtoCache extends ReadThroughCache<Long, FilmDto> {
+
+    public FilmDtoCache(@Value("${filmorate.films.cache.max-size:10000}") int maxSize) {
+        super("filmorate.films.cache", maxSize);
+    }
+}
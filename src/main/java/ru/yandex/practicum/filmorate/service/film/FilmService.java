@@ -1,11 +1,18 @@
 package ru.yandex.practicum.filmorate.service.film;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.exc.StreamReadException;
+import com.fasterxml.jackson.databind.DatabindException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.persistence.EntityNotFoundException;
 import jakarta.validation.ConstraintViolation;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import ru.yandex.practicum.filmorate.dto.film.FilmDto;
+import ru.yandex.practicum.filmorate.dto.film.FilmImportErrorDto;
+import ru.yandex.practicum.filmorate.dto.film.FilmImportResultDto;
 import ru.yandex.practicum.filmorate.dto.film.GenreDto;
 import ru.yandex.practicum.filmorate.dto.film.MpaDto;
 import ru.yandex.practicum.filmorate.dto.film.requests.NewFilmRequest;
@@ -13,16 +20,21 @@ import ru.yandex.practicum.filmorate.dto.film.requests.UpdateFilmRequest;
 import ru.yandex.practicum.filmorate.exception.ConditionsNotMetException;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.mapper.film.FilmMapper;
+import ru.yandex.practicum.filmorate.model.EntityVersion;
 import ru.yandex.practicum.filmorate.model.film.Film;
 import ru.yandex.practicum.filmorate.model.film.Genre;
 import ru.yandex.practicum.filmorate.model.film.Mpa;
 import ru.yandex.practicum.filmorate.storage.db.film.FilmStorage;
 import ru.yandex.practicum.filmorate.storage.db.film.GenreStorage;
 import ru.yandex.practicum.filmorate.storage.db.film.MpaStorage;
-import ru.yandex.practicum.filmorate.storage.db.user.UserStorage;
+import ru.yandex.practicum.filmorate.util.ETagUtil;
 import ru.yandex.practicum.filmorate.util.FormatUtil;
+import ru.yandex.practicum.filmorate.util.JsonStreamUtil;
 import ru.yandex.practicum.filmorate.util.ValidationUtil;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -37,11 +49,15 @@ import java.util.Set;
 public class FilmService {
     private final FilmStorage filmStorage;
     private final MpaStorage mpaStorage;
-    private final UserStorage userStorage;
     private final GenreStorage genreStorage;
+    private final LikeWriteBehindBuffer likeWriteBehindBuffer;
+    private final FilmDtoCache filmDtoCache;
+    private final ObjectMapper objectMapper;
 
     private static final LocalDate MIN_RELEASE_DATE = LocalDate.of(1895, 12, 28);
     private static final String MIN_RELEASE_TEMPLATE = "Film release date is before the minimum allowed date: 28.12.1895";
+    private static final int IMPORT_CHUNK_SIZE = 500;
+    private static final int MAX_REPORTED_IMPORT_ERRORS = 1000;
 
     public FilmDto createFilm(NewFilmRequest request) {
         try {
@@ -52,7 +68,7 @@ public class FilmService {
             validateFilm(film);
 
             film = filmStorage.createFilm(film);
-            List<GenreDto> genres = getFilmGenres(film.getId());
+            List<GenreDto> genres = getFullGenres(film.getGenreIds());
 
             FilmDto filmDto = FilmMapper.mapToFilmDto(film);
             filmDto.setGenres(genres);
@@ -67,6 +83,120 @@ public class FilmService {
         }
     }
 
+    public FilmImportResultDto importFilms(InputStream body) throws IOException {
+        FilmImportResultDto result = new FilmImportResultDto();
+        List<Film> chunk = new ArrayList<>(IMPORT_CHUNK_SIZE);
+        List<Long> chunkRecords = new ArrayList<>(IMPORT_CHUNK_SIZE);
+        long record = 0;
+        long lastFailedRecord = 0;
+
+        try (MappingIterator<NewFilmRequest> requests = objectMapper
+                .readerFor(NewFilmRequest.class)
+                .readValues(body)) {
+            while (requests.hasNextValue()) {
+                record++;
+                try {
+                    chunk.add(mapToValidFilm(requests.nextValue()));
+                    chunkRecords.add(record);
+                } catch (DatabindException | RuntimeException e) {
+                    addImportError(result, record, e);
+                    lastFailedRecord = record;
+                } catch (StreamReadException e) {
+                    abortImport(result, record, chunkRecords, e, true);
+                    break;
+                }
+
+                if (chunk.size() == IMPORT_CHUNK_SIZE) {
+                    saveImportChunk(chunk, chunkRecords, result);
+                }
+            }
+        } catch (StreamReadException e) {
+            // A record cut off mid-value fails to bind first, and the stream only breaks on the next read.
+            boolean recordReported = lastFailedRecord == record;
+            abortImport(result, recordReported ? record : ++record, chunkRecords, e, !recordReported);
+        } catch (IOException e) {
+            log.warn("Film import aborted after {} imported records: {}", result.getImported(), e.getMessage());
+            throw e;
+        } finally {
+            result.setReceived(record);
+        }
+
+        // A truncated or malformed upload keeps the chunks saved so far, but not the records read after them.
+        if (!result.isAborted()) {
+            saveImportChunk(chunk, chunkRecords, result);
+        }
+        log.info("Film import finished: received={}, imported={}, failed={}, aborted={}",
+                result.getReceived(), result.getImported(), result.getFailed(), result.isAborted());
+        return result;
+    }
+
+    private void abortImport(FilmImportResultDto result, long record, List<Long> chunkRecords,
+                             StreamReadException e, boolean reportRecord) {
+        log.warn("Film import stopped on malformed input at record {} after {} imported records: {}",
+                record, result.getImported(), e.getOriginalMessage());
+        result.setAborted(true);
+        for (Long unsavedRecord : chunkRecords) {
+            addImportError(result, unsavedRecord, "Not imported: the upload ended before this chunk was saved");
+        }
+        if (reportRecord) {
+            addImportError(result, record, e);
+        }
+    }
+
+    private Film mapToValidFilm(NewFilmRequest request) {
+        if (request.getMpa() == null) {
+            throw new IllegalArgumentException("MPA rating is required");
+        }
+        Film film = FilmMapper.mapToFilm(request);
+        film.setMpa(validateAndFetchMpa(request.getMpa().getId()));
+        film.getGenreIds().forEach(this::validateGenreExists);
+        validateFilm(film);
+        return film;
+    }
+
+    private void validateGenreExists(Long genreId) {
+        if (genreStorage.getGenreById(genreId).isEmpty()) {
+            throw new IllegalArgumentException(FormatUtil.formatNotFoundMessage("Genre", genreId));
+        }
+    }
+
+    private void saveImportChunk(List<Film> chunk, List<Long> chunkRecords, FilmImportResultDto result) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+
+        try {
+            filmStorage.createFilms(chunk);
+            result.setImported(result.getImported() + chunk.size());
+        } catch (RuntimeException e) {
+            log.warn("Film import chunk failed, retrying {} records one by one: {}", chunk.size(), e.getMessage());
+            for (int idx = 0; idx < chunk.size(); idx++) {
+                try {
+                    filmStorage.createFilm(chunk.get(idx));
+                    result.setImported(result.getImported() + 1);
+                } catch (RuntimeException recordException) {
+                    addImportError(result, chunkRecords.get(idx), recordException);
+                }
+            }
+        }
+
+        chunk.clear();
+        chunkRecords.clear();
+    }
+
+    private void addImportError(FilmImportResultDto result, long record, Exception e) {
+        addImportError(result, record, e instanceof JsonProcessingException jsonException
+                ? jsonException.getOriginalMessage()
+                : e.getMessage());
+    }
+
+    private void addImportError(FilmImportResultDto result, long record, String message) {
+        result.setFailed(result.getFailed() + 1);
+        if (result.getErrors().size() < MAX_REPORTED_IMPORT_ERRORS) {
+            result.getErrors().add(new FilmImportErrorDto(record, message));
+        }
+    }
+
     private void validateFilm(Film film) {
         validateReleaseDate(film.getReleaseDate());
         Set<ConstraintViolation<Film>> violations = ValidationUtil.validate(film);
@@ -76,7 +206,7 @@ public class FilmService {
     }
 
     private void validateReleaseDate(LocalDate releaseDate) {
-        if (releaseDate.isBefore(MIN_RELEASE_DATE)) {
+        if (releaseDate != null && releaseDate.isBefore(MIN_RELEASE_DATE)) {
             throw new IllegalArgumentException(MIN_RELEASE_TEMPLATE);
         }
     }
@@ -98,6 +228,7 @@ public class FilmService {
                 updatedFilm.setLikes(request.getLikes());
             }
             updatedFilm = filmStorage.updateFilm(updatedFilm);
+            filmDtoCache.invalidate(filmId);
             return FilmMapper.mapToFilmDto(updatedFilm);
         } catch (Exception e) {
             log.error("Error updating film with id {}: {}", filmId, e.getMessage(), e);
@@ -106,12 +237,17 @@ public class FilmService {
     }
 
     public FilmDto getFilmById(Long filmId) {
-        return filmStorage.getFilmById(filmId)
-                .map(this::mapToFilmDtoWithGenres)
+        return filmDtoCache.get(filmId, () -> filmStorage.getFilmById(filmId).map(this::mapToFilmDtoWithGenres))
                 .orElseThrow(() -> new NotFoundException(
                         FormatUtil.formatNotFoundMessage("Film", filmId)));
     }
 
+    private List<FilmDto> mapToFilmDtosWithGenres(Collection<Film> films) {
+        return films.stream()
+                .map(this::mapToFilmDtoWithGenres)
+                .toList();
+    }
+
     private FilmDto mapToFilmDtoWithGenres(Film film) {
         FilmDto filmDto = FilmMapper.mapToFilmDto(film);
         List<GenreDto> fullGenres = getFullGenres(film.getGenreIds());
@@ -133,48 +269,64 @@ public class FilmService {
         return new GenreDto(genre.getId(), genre.getName());
     }
 
-    public List<FilmDto> getFilms() {
-        return filmStorage.getFilms()
-                .stream()
-                .map(this::mapToFilmDtoWithGenres)
-                .toList();
+    public List<FilmDto> getFilmsPage(long afterId, int limit) {
+        ValidationUtil.validatePageLimit(limit);
+        return mapToFilmDtosWithGenres(filmStorage.getFilmsPage(afterId, limit));
+    }
+
+    public void writeFilms(OutputStream out) throws IOException {
+        JsonStreamUtil.writeArray(objectMapper, out, filmStorage.streamFilms()
+                .map(this::mapToFilmDtoWithGenres));
     }
 
     public void removeLike(Long filmId, Long userId) {
-        log.debug("Removing like: filmId={}, userId={}", filmId, userId);
-        if (userStorage.getUserById(userId).isPresent() && filmStorage.getFilmById(filmId).isPresent()) {
-            filmStorage.removeLike(filmId, userId);
-            log.debug("Like removed successfully: filmId={}", filmId);
+        if (likeWriteBehindBuffer.isEnabled()) {
+            filmStorage.validateFilmAndUserExist(filmId, userId);
+            likeWriteBehindBuffer.removeLike(filmId, userId);
         } else {
-            if (userStorage.getUserById(userId).isEmpty()) {
-                throw new NotFoundException(FormatUtil.formatNotFoundMessage("User", userId));
-            }
-            if (filmStorage.getFilmById(filmId).isEmpty()) {
-                throw new NotFoundException(FormatUtil.formatNotFoundMessage("Film", filmId));
-            }
+            filmStorage.removeLike(filmId, userId);
+            filmDtoCache.invalidate(filmId);
         }
     }
 
     public void addLike(Long filmId, Long userId) {
-        log.debug("Adding like: filmId={}, userId={}", filmId, userId);
-        if (userStorage.getUserById(userId).isPresent() && filmStorage.getFilmById(filmId).isPresent()) {
-            filmStorage.addLike(filmId, userId);
-            log.debug("Like added successfully: filmId={}", filmId);
+        if (likeWriteBehindBuffer.isEnabled()) {
+            filmStorage.validateFilmAndUserExist(filmId, userId);
+            likeWriteBehindBuffer.addLike(filmId, userId);
         } else {
-            if (userStorage.getUserById(userId).isEmpty()) {
-                throw new NotFoundException(FormatUtil.formatNotFoundMessage("User", userId));
-            }
-            if (filmStorage.getFilmById(filmId).isEmpty()) {
-                throw new NotFoundException(FormatUtil.formatNotFoundMessage("Film", filmId));
-            }
+            filmStorage.addLike(filmId, userId);
+            filmDtoCache.invalidate(filmId);
         }
     }
 
-    public List<FilmDto> getPopularFilms(int count) {
-        return filmStorage.getPopularFilms(count)
-                .stream()
-                .map(this::mapToFilmDtoWithGenres)
-                .toList();
+    public String getFilmETag(Long filmId) {
+        return filmStorage.getFilmVersion(filmId)
+                .map(version -> ETagUtil.forEntity("film", filmId, version))
+                .orElseThrow(() -> new NotFoundException(
+                        FormatUtil.formatNotFoundMessage("Film", filmId)));
+    }
+
+    public List<EntityVersion> getPopularFilmVersions(int count, Long genreId, Integer year) {
+        return filmStorage.getPopularFilmVersions(count, genreId, year);
+    }
+
+    public List<FilmDto> getFilms(List<EntityVersion> versions) {
+        return mapToFilmDtosWithGenres(filmStorage.getFilmsByIds(versions.stream()
+                .map(EntityVersion::getId)
+                .toList()));
+    }
+
+    public List<FilmDto> searchFilms(String query, int limit) {
+        ValidationUtil.validatePageLimit(limit);
+        if (query == null || query.isBlank()) {
+            throw new IllegalArgumentException("Search query must not be blank");
+        }
+        return mapToFilmDtosWithGenres(filmStorage.searchFilms(query, limit));
+    }
+
+    public List<FilmDto> getRecommendations(Long userId, int limit) {
+        ValidationUtil.validatePageLimit(limit);
+        return mapToFilmDtosWithGenres(filmStorage.getRecommendedFilms(userId, limit));
     }
 
     public MpaDto getMpaById(Long mpaId) {
@@ -204,13 +356,6 @@ public class FilmService {
                 .toList();
     }
 
-    private List<GenreDto> getFilmGenres(Long filmId) {
-        List<Genre> genres = genreStorage.getGenresByFilmId(filmId);
-        return genres.stream()
-                .map(genre -> new GenreDto(genre.getId(), genre.getName()))
-                .toList();
-    }
-
     public GenreDto getGenreById(Long genreId) {
         Genre genre = genreStorage.getGenreById(genreId)
                 .orElseThrow(() -> new EntityNotFoundException(
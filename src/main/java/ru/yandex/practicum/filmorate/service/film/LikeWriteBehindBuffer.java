@@ -0,0 +1,195 @@
+package ru.yandex.practicum.filmorate.service.film;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.exception.ServiceUnavailableException;
+import ru.yandex.practicum.filmorate.model.film.Like;
+import ru.yandex.practicum.filmorate.storage.db.film.FilmStorage;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+
+/**
+ * Optional write-behind buffer for like and unlike requests.
+ *
+ * Pending changes are kept per (film, user) pair, so a like followed by an unlike of the same film
+ * collapses into the last requested state. A background flusher applies the pending changes to the
+ * `likes` table in batches. When the buffer holds `queue-capacity` distinct pairs, callers wait up to
+ * `offer-timeout-ms` for the next flush and are rejected with 503 afterwards. A failed flush is retried
+ * before newer changes are taken, which keeps callers waiting rather than dropping accepted changes.
+ * Pending changes are flushed on shutdown.
+ */
+@Slf4j
+@Component
+public class LikeWriteBehindBuffer {
+    private static final int SHUTDOWN_FLUSH_ATTEMPTS = 3;
+
+    private final FilmStorage filmStorage;
+    private final FilmDtoCache filmDtoCache;
+    private final boolean enabled;
+    private final long flushIntervalMs;
+    private final int queueCapacity;
+    private final long offerTimeoutMs;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notFull = lock.newCondition();
+    private Map<Like, Boolean> pending = new LinkedHashMap<>();
+    // Only the flusher thread, and `stop` after it has terminated, touch the failed batch.
+    private volatile Map<Like, Boolean> failedBatch;
+    private ScheduledExecutorService flusher;
+
+    public LikeWriteBehindBuffer(
+            FilmStorage filmStorage,
+            FilmDtoCache filmDtoCache,
+            @Value("${filmorate.likes.write-behind.enabled:false}") boolean enabled,
+            @Value("${filmorate.likes.write-behind.flush-interval-ms:200}") long flushIntervalMs,
+            @Value("${filmorate.likes.write-behind.queue-capacity:10000}") int queueCapacity,
+            @Value("${filmorate.likes.write-behind.offer-timeout-ms:500}") long offerTimeoutMs
+    ) {
+        this.filmStorage = filmStorage;
+        this.filmDtoCache = filmDtoCache;
+        this.enabled = enabled;
+        this.flushIntervalMs = flushIntervalMs;
+        this.queueCapacity = queueCapacity;
+        this.offerTimeoutMs = offerTimeoutMs;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "like-write-behind");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flush, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+        log.info("Like write-behind enabled: flushIntervalMs={}, queueCapacity={}", flushIntervalMs, queueCapacity);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (flusher == null) {
+            return;
+        }
+        flusher.shutdown();
+        if (!flusher.awaitTermination(flushIntervalMs * 10, TimeUnit.MILLISECONDS)) {
+            log.warn("Like write-behind flusher did not stop in time");
+        }
+        for (int attempt = 0; attempt < SHUTDOWN_FLUSH_ATTEMPTS && flush() > 0; attempt++) {
+            log.debug("Draining like write-behind buffer, attempt {}", attempt + 1);
+        }
+        int failed = failedBatch != null ? failedBatch.size() : 0;
+        int unflushed;
+        lock.lock();
+        try {
+            unflushed = pending.size();
+        } finally {
+            lock.unlock();
+        }
+        if (failed > 0 || unflushed > 0) {
+            log.error("Like write-behind stopped with unwritten changes: failed={}, pending={}", failed, unflushed);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void addLike(Long filmId, Long userId) {
+        submit(new Like(filmId, userId), true);
+    }
+
+    public void removeLike(Long filmId, Long userId) {
+        submit(new Like(filmId, userId), false);
+    }
+
+    private void submit(Like like, boolean liked) {
+        if (!enabled) {
+            throw new IllegalStateException("Like write-behind is disabled");
+        }
+
+        lock.lock();
+        try {
+            if (!pending.containsKey(like)) {
+                long nanos = TimeUnit.MILLISECONDS.toNanos(offerTimeoutMs);
+                while (pending.size() >= queueCapacity) {
+                    if (nanos <= 0) {
+                        throw new ServiceUnavailableException("Too many pending likes, try again later");
+                    }
+                    nanos = notFull.awaitNanos(nanos);
+                }
+            }
+            pending.put(like, liked);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServiceUnavailableException("Interrupted while waiting to enqueue a like");
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Writes the pending changes and returns how many were attempted. A batch whose write fails is kept
+     * and retried before any newer change is taken, so changes to the same pair are applied in order and
+     * acknowledged changes are never dropped. Meanwhile `pending` fills up and submitters get the usual
+     * backpressure.
+     */
+    int flush() {
+        if (failedBatch != null) {
+            Map<Like, Boolean> retried = failedBatch;
+            if (!write(retried)) {
+                return retried.size();
+            }
+            failedBatch = null;
+        }
+
+        Map<Like, Boolean> batch;
+        lock.lock();
+        try {
+            if (pending.isEmpty()) {
+                return 0;
+            }
+            batch = pending;
+            pending = new LinkedHashMap<>();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+
+        if (!write(batch)) {
+            failedBatch = batch;
+        }
+        return batch.size();
+    }
+
+    private boolean write(Map<Like, Boolean> batch) {
+        List<Like> addedLikes = new ArrayList<>();
+        List<Like> removedLikes = new ArrayList<>();
+        batch.forEach((like, liked) -> (liked ? addedLikes : removedLikes).add(like));
+
+        try {
+            filmStorage.applyLikes(addedLikes, removedLikes);
+            filmDtoCache.invalidate(batch.keySet().stream()
+                    .map(Like::getFilmId)
+                    .collect(Collectors.toSet()));
+            log.debug("Like write-behind flushed: added={}, removed={}", addedLikes.size(), removedLikes.size());
+            return true;
+        } catch (RuntimeException e) {
+            log.error("Failed to flush {} pending likes, will retry: {}", batch.size(), e.getMessage());
+            return false;
+        }
+    }
+}
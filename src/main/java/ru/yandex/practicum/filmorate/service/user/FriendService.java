@@ -1,21 +1,33 @@
 package ru.yandex.practicum.filmorate.service.user;
 
-import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import ru.yandex.practicum.filmorate.dto.user.UserDto;
-import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.mapper.user.UserMapper;
+import ru.yandex.practicum.filmorate.model.EntityVersion;
+import ru.yandex.practicum.filmorate.model.user.User;
 import ru.yandex.practicum.filmorate.storage.db.user.FriendStorage;
-import ru.yandex.practicum.filmorate.storage.db.user.UserStorage;
-import ru.yandex.practicum.filmorate.util.FormatUtil;
+import ru.yandex.practicum.filmorate.util.ValidationUtil;
 
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
-@RequiredArgsConstructor
 public class FriendService {
-    private final UserStorage userStorage;
     private final FriendStorage friendStorage;
+    private final int recommendationsMaxFanOut;
+
+    public FriendService(
+            FriendStorage friendStorage,
+            @Value("${filmorate.friends.recommendations.max-fan-out:1000}") int recommendationsMaxFanOut
+    ) {
+        this.friendStorage = friendStorage;
+        this.recommendationsMaxFanOut = recommendationsMaxFanOut;
+    }
 
     public void addFriend(Long userId, Long friendId) {
         friendStorage.addFriend(userId, friendId);
@@ -26,23 +38,35 @@ public class FriendService {
     }
 
     public List<UserDto> getFriends(Long userId, boolean onlyConfirmed) {
-        List<Long> friendIds = friendStorage.getFriendsIds(userId, onlyConfirmed);
-        return friendIds.stream()
-                .map(friendId -> userStorage.getUserById(friendId)
-                        .map(UserMapper::mapToUserDto)
-                        .orElseThrow(() -> new NotFoundException(
-                                FormatUtil.formatNotFoundMessage("Friends for user", userId))))
+        return friendStorage.getFriends(userId, onlyConfirmed).stream()
+                .map(UserMapper::mapToUserDto)
                 .toList();
     }
 
+    public List<EntityVersion> getFriendVersions(Long userId, boolean onlyConfirmed) {
+        return friendStorage.getFriendVersions(userId, onlyConfirmed);
+    }
+
     public List<UserDto> getCommonFriends(Long userId, Long otherId) {
-        List<Long> commonFriendIds = friendStorage.getCommonFriendsIds(userId, otherId);
-        return commonFriendIds.stream()
-                .map(friendId -> userStorage.getUserById(friendId)
-                        .map(UserMapper::mapToUserDto)
-                        .orElseThrow(() -> new NotFoundException(
-                                String.format("Common friends for userId %s and friendId %s not found",
-                                        userId, friendId))))
+        return friendStorage.getCommonFriends(userId, otherId).stream()
+                .map(UserMapper::mapToUserDto)
+                .toList();
+    }
+
+    public int getFriendsCount(Long userId) {
+        return friendStorage.getFriendsCount(userId);
+    }
+
+    public List<UserDto> getFriendRecommendations(Long userId, int limit) {
+        ValidationUtil.validatePageLimit(limit);
+        long[] rankedIds = friendStorage.getFriendRecommendationIds(userId, limit, recommendationsMaxFanOut);
+
+        Map<Long, User> usersById = friendStorage.getUsersByIds(rankedIds).stream()
+                .collect(Collectors.toMap(User::getId, Function.identity()));
+        return Arrays.stream(rankedIds)
+                .mapToObj(usersById::get)
+                .filter(Objects::nonNull)
+                .map(UserMapper::mapToUserDto)
                 .toList();
     }
 }
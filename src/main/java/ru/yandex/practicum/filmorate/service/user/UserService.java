@@ -1,5 +1,6 @@
 package ru.yandex.practicum.filmorate.service.user;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.validation.ConstraintViolation;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -13,9 +14,13 @@ import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.mapper.user.UserMapper;
 import ru.yandex.practicum.filmorate.model.user.User;
 import ru.yandex.practicum.filmorate.storage.db.user.UserStorage;
+import ru.yandex.practicum.filmorate.util.ETagUtil;
 import ru.yandex.practicum.filmorate.util.FormatUtil;
+import ru.yandex.practicum.filmorate.util.JsonStreamUtil;
 import ru.yandex.practicum.filmorate.util.ValidationUtil;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
@@ -25,6 +30,7 @@ import java.util.Set;
 @RequiredArgsConstructor
 public class UserService {
     private final UserStorage userStorage;
+    private final ObjectMapper objectMapper;
 
     public UserDto createUser(NewUserRequest request) {
         try {
@@ -55,13 +61,26 @@ public class UserService {
                         FormatUtil.formatNotFoundMessage("User", userId)));
     }
 
-    public List<UserDto> getUsers() {
-        return userStorage.getUsers()
+    public String getUserETag(long userId) {
+        return userStorage.getUserVersion(userId)
+                .map(version -> ETagUtil.forEntity("user", userId, version))
+                .orElseThrow(() -> new NotFoundException(
+                        FormatUtil.formatNotFoundMessage("User", userId)));
+    }
+
+    public List<UserDto> getUsersPage(long afterId, int limit) {
+        ValidationUtil.validatePageLimit(limit);
+        return userStorage.getUsersPage(afterId, limit)
                 .stream()
                 .map(UserMapper::mapToUserDto)
                 .toList();
     }
 
+    public void writeUsers(OutputStream out) throws IOException {
+        JsonStreamUtil.writeArray(objectMapper, out, userStorage.streamUsers()
+                .map(UserMapper::mapToUserDto));
+    }
+
     public UserDto updateUser(long userId, UpdateUserRequest request) {
         try {
             User updatedUser = userStorage.getUserById(userId)
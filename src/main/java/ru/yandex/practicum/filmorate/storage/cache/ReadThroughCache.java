@@ -0,0 +1,98 @@
+package ru.yandex.practicum.filmorate.storage.cache;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Bounded read-through cache with least-recently-used eviction.
+ *
+ * Writers must call `invalidate` after their transaction has committed. Every invalidation bumps a
+ * write stamp under the same lock that guards the map, and a loaded value is stored only if no
+ * invalidation happened while it was being loaded, so a load that raced with a write can never put
+ * the pre-write state back. Hit, miss and eviction counters are published as `<metricPrefix>.*`
+ * metrics.
+ */
+public class ReadThroughCache<K, V> implements MeterBinder {
+    private final String metricPrefix;
+    private final int maxSize;
+    private final Map<K, V> values;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private long writeStamp;
+
+    public ReadThroughCache(String metricPrefix, int maxSize) {
+        this.metricPrefix = metricPrefix;
+        this.maxSize = maxSize;
+        this.values = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                if (size() > ReadThroughCache.this.maxSize) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public Optional<V> get(K key, Supplier<Optional<V>> loader) {
+        long stamp;
+        synchronized (this) {
+            V cached = values.get(key);
+            if (cached != null) {
+                hits.increment();
+                return Optional.of(cached);
+            }
+            stamp = writeStamp;
+        }
+
+        misses.increment();
+        Optional<V> loaded = loader.get();
+        if (loaded.isPresent() && maxSize > 0) {
+            synchronized (this) {
+                if (stamp == writeStamp) {
+                    values.put(key, loaded.get());
+                }
+            }
+        }
+        return loaded;
+    }
+
+    public synchronized void invalidate(K key) {
+        writeStamp++;
+        values.remove(key);
+    }
+
+    public synchronized void invalidate(Collection<K> keys) {
+        writeStamp++;
+        keys.forEach(values::remove);
+    }
+
+    public synchronized int size() {
+        return values.size();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder(metricPrefix + ".requests", hits, LongAdder::sum)
+                .tag("result", "hit")
+                .register(registry);
+        FunctionCounter.builder(metricPrefix + ".requests", misses, LongAdder::sum)
+                .tag("result", "miss")
+                .register(registry);
+        FunctionCounter.builder(metricPrefix + ".evictions", evictions, LongAdder::sum)
+                .register(registry);
+        Gauge.builder(metricPrefix + ".size", this, ReadThroughCache::size)
+                .register(registry);
+    }
+}
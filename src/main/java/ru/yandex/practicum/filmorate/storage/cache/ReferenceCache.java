@@ -0,0 +1,50 @@
+package ru.yandex.practicum.filmorate.storage.cache;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.ToLongFunction;
+
+/**
+ * Immutable snapshot of a small reference table, such as MPA ratings or genres.
+ *
+ * Entries are stored in an array indexed by their ID, so lookups are a bounds check and an array read.
+ * Owning storages build a new snapshot on every refresh and swap it in as a whole, so readers never
+ * observe a partially loaded table.
+ */
+public final class ReferenceCache<T> {
+    private static final long MAX_ID = 65_535;
+
+    private final Object[] valuesById;
+    private final List<T> values;
+
+    public ReferenceCache(Collection<T> values, ToLongFunction<T> idExtractor) {
+        long maxId = values.stream()
+                .mapToLong(idExtractor)
+                .max()
+                .orElse(0);
+        if (maxId > MAX_ID) {
+            throw new IllegalStateException("Reference data id is too large to be cached: " + maxId);
+        }
+
+        Object[] index = new Object[(int) maxId + 1];
+        for (T value : values) {
+            index[(int) idExtractor.applyAsLong(value)] = value;
+        }
+
+        this.valuesById = index;
+        this.values = List.copyOf(values);
+    }
+
+    @SuppressWarnings("unchecked")
+    public Optional<T> get(Long id) {
+        if (id == null || id < 0 || id >= valuesById.length) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable((T) valuesById[id.intValue()]);
+    }
+
+    public List<T> values() {
+        return values;
+    }
+}
@@ -0,0 +1,74 @@
+package ru.yandex.practicum.filmorate.storage.cache;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.storage.db.film.GenreStorage;
+import ru.yandex.practicum.filmorate.storage.db.film.MpaStorage;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reloads the MPA and genre caches every `refresh-interval-ms`, so rows changed directly in the
+ * database show up without a restart. The application has no write path for reference data, which
+ * makes a periodic reload the only way to notice such changes. An interval of 0 disables the reload.
+ */
+@Slf4j
+@Component
+public class ReferenceCacheRefresher {
+    private final MpaStorage mpaStorage;
+    private final GenreStorage genreStorage;
+    private final long refreshIntervalMs;
+
+    private ScheduledExecutorService refresher;
+
+    public ReferenceCacheRefresher(
+            MpaStorage mpaStorage,
+            GenreStorage genreStorage,
+            @Value("${filmorate.reference.refresh-interval-ms:60000}") long refreshIntervalMs
+    ) {
+        this.mpaStorage = mpaStorage;
+        this.genreStorage = genreStorage;
+        this.refreshIntervalMs = refreshIntervalMs;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (refreshIntervalMs <= 0) {
+            return;
+        }
+        refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "reference-cache-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        refresher.scheduleWithFixedDelay(this::refreshQuietly, refreshIntervalMs, refreshIntervalMs,
+                TimeUnit.MILLISECONDS);
+        log.info("Reference cache refresh enabled: refreshIntervalMs={}", refreshIntervalMs);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (refresher != null) {
+            refresher.shutdownNow();
+        }
+    }
+
+    public void refresh() {
+        mpaStorage.refresh();
+        genreStorage.refresh();
+    }
+
+    private void refreshQuietly() {
+        try {
+            refresh();
+        } catch (RuntimeException e) {
+            // A failed reload keeps the previous snapshot; the next tick tries again.
+            log.warn("Failed to refresh reference caches: {}", e.getMessage());
+        }
+    }
+}
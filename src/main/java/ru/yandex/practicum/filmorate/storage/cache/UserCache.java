@@ -0,0 +1,19 @@
+package ru.yandex.practicum.filmorate.storage.cache;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.user.User;
+
+/**
+ * Cache of user records, including friend IDs, served by `UserDbStorage.getUserById`.
+ *
+ * Cached users are never handed out directly; the storage returns copies, because callers update the
+ * returned object before writing it back.
+ */
+@Component
+public class UserCache extends ReadThroughCache<Long, User> {
+
+    public UserCache(@Value("${filmorate.users.cache.max-size:10000}") int maxSize) {
+        super("filmorate.users.cache", maxSize);
+    }
+}
@@ -1,21 +1,34 @@
 package ru.yandex.practicum.filmorate.storage.db;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import ru.yandex.practicum.filmorate.exception.InternalServerException;
+import ru.yandex.practicum.filmorate.model.EntityVersion;
 
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.Statement;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+import java.util.stream.Stream;
 
 public class BaseDbStorage<T> {
+    protected static final int STREAM_FETCH_SIZE = 500;
+    protected static final RowMapper<EntityVersion> VERSION_MAPPER = (resultSet, rowNum) ->
+            new EntityVersion(resultSet.getLong("id"), resultSet.getLong("version"));
+
     protected final JdbcTemplate jdbc;
     protected final RowMapper<T> mapper;
+    private QueryMetrics queryMetrics;
 
     public BaseDbStorage(JdbcTemplate jdbc) {
         this.jdbc = jdbc;
@@ -27,36 +40,88 @@ public class BaseDbStorage<T> {
         this.mapper = mapper;
     }
 
+    @Autowired(required = false)
+    public void setQueryMetrics(QueryMetrics queryMetrics) {
+        this.queryMetrics = queryMetrics;
+    }
+
     protected Optional<T> findOne(String query, Object... params) {
-        try {
-            return mapper != null
-                    ? Optional.ofNullable(jdbc.queryForObject(query, mapper, params))
-                    : Optional.empty();
-        } catch (EmptyResultDataAccessException ignored) {
-            return Optional.empty();
-        }
+        return measure(query, () -> {
+            try {
+                return mapper != null
+                        ? Optional.ofNullable(jdbc.queryForObject(query, mapper, params))
+                        : Optional.<T>empty();
+            } catch (EmptyResultDataAccessException ignored) {
+                return Optional.<T>empty();
+            }
+        }, found -> found.isPresent() ? 1 : 0);
     }
 
     protected List<T> findMany(String query, Object... params) {
         return mapper != null
-                ? jdbc.query(query, mapper, params)
+                ? findMany(query, mapper, params)
                 : Collections.emptyList();
     }
 
+    protected <R> List<R> findMany(String query, RowMapper<R> rowMapper, Object... params) {
+        return measure(query, () -> jdbc.query(query, rowMapper, params), List::size);
+    }
+
+    protected <R> List<R> findValues(String query, Class<R> type, Object... params) {
+        return measure(query, () -> jdbc.queryForList(query, type, params), List::size);
+    }
+
+    protected <R> Optional<R> findValue(String query, Class<R> type, Object... params) {
+        return measure(query, () -> {
+            try {
+                return Optional.ofNullable(jdbc.queryForObject(query, type, params));
+            } catch (EmptyResultDataAccessException ignored) {
+                return Optional.<R>empty();
+            }
+        }, found -> found.isPresent() ? 1 : 0);
+    }
+
+    protected int forEachRow(String query, RowCallbackHandler handler, Object... params) {
+        return measure(query, () -> {
+            int[] rows = new int[1];
+            jdbc.query(query, resultSet -> {
+                rows[0]++;
+                handler.processRow(resultSet);
+            }, params);
+            return rows[0];
+        }, Integer::intValue);
+    }
+
+    protected Stream<T> stream(String query, RowMapper<T> rowMapper, Object... params) {
+        Supplier<Stream<T>> call = () -> jdbc.queryForStream(connection -> {
+            PreparedStatement ps = connection.prepareStatement(
+                    query, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(STREAM_FETCH_SIZE);
+            for (int idx = 0; idx < params.length; idx++) {
+                ps.setObject(idx + 1, params[idx]);
+            }
+            return ps;
+        }, rowMapper);
+        // Rows are fetched lazily, so the stream is timed and its rows are counted until it is closed.
+        return queryMetrics != null
+                ? queryMetrics.recordStream(getClass(), query, call)
+                : call.get();
+    }
+
     public void delete(String query, long id) {
-        jdbc.update(query, id);
+        execute(query, id);
     }
 
     protected long insert(String query, Object... params) {
         KeyHolder keyHolder = new GeneratedKeyHolder();
-        jdbc.update(connection -> {
+        measure(query, () -> jdbc.update(connection -> {
             PreparedStatement ps = connection
                     .prepareStatement(query, Statement.RETURN_GENERATED_KEYS);
             for (int idx = 0; idx < params.length; idx++) {
                 ps.setObject(idx + 1, params[idx]);
             }
             return ps;
-        }, keyHolder);
+        }, keyHolder), Integer::intValue);
 
         Long id = keyHolder.getKeyAs(Long.class);
         if (id != null) {
@@ -67,9 +132,27 @@ public class BaseDbStorage<T> {
     }
 
     protected void update(String query, Object... params) {
-        int rowsUpdated = jdbc.update(query, params);
+        int rowsUpdated = execute(query, params);
         if (rowsUpdated == 0) {
             throw new InternalServerException("Failed to update data");
         }
     }
-}
\ No newline at end of file
+
+    protected int execute(String query, Object... params) {
+        return measure(query, () -> jdbc.update(query, params), Integer::intValue);
+    }
+
+    protected int[] batchUpdate(String query, List<Object[]> batchArgs) {
+        return measure(query, () -> jdbc.batchUpdate(query, batchArgs), counts -> Arrays.stream(counts).sum());
+    }
+
+    /**
+     * Runs a call that executes `query` and records its time, the number of rows it returned or changed
+     * and its errors, if query metrics are enabled.
+     */
+    protected <R> R measure(String query, Supplier<R> call, ToIntFunction<R> rows) {
+        return queryMetrics != null
+                ? queryMetrics.record(getClass(), query, call, rows)
+                : call.get();
+    }
+}
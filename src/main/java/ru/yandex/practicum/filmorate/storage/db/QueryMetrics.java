@@ -0,0 +1,187 @@
+package ru.yandex.practicum.filmorate.storage.db;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+import java.util.stream.Stream;
+
+/**
+ * Per-query timers, row count summaries and error counters for `BaseDbStorage`.
+ *
+ * Queries are named after the `*_QUERY` constant that holds their SQL, e.g.
+ * `FilmDbStorage.FIND_BY_ID_QUERY`, so the number of meters is bounded by the number of constants.
+ * Constants with `%s` placeholders also match the SQL formatted from them; any other SQL is reported
+ * as `<Storage>.unnamed`. Until Spring binds a registry, queries run without being measured.
+ *
+ * Timers and row summaries publish percentile histograms plus fixed SLO buckets, so latency and
+ * result size percentiles can be aggregated across instances by the monitoring backend.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "filmorate.db.metrics.enabled", havingValue = "true", matchIfMissing = true)
+public class QueryMetrics implements MeterBinder {
+    public static final String QUERY_TIMER = "filmorate.db.query";
+    public static final String QUERY_ROWS = "filmorate.db.query.rows";
+    public static final String QUERY_ERRORS = "filmorate.db.query.errors";
+    private static final String QUERY_SUFFIX = "_QUERY";
+    private static final String PLACEHOLDER = "%s";
+    private static final Duration[] TIMER_SLOS = {
+            Duration.ofMillis(1), Duration.ofMillis(5), Duration.ofMillis(25), Duration.ofMillis(100),
+            Duration.ofMillis(500)
+    };
+    private static final Duration MAX_EXPECTED_DURATION = Duration.ofSeconds(30);
+    private static final double[] ROWS_SLOS = {1, 10, 100, 1000};
+    private static final double MAX_EXPECTED_ROWS = 1_000_000;
+
+    private final Map<Class<?>, QueryNames> namesByStorage = new ConcurrentHashMap<>();
+    private final Map<String, QueryMeters> metersByName = new ConcurrentHashMap<>();
+    private volatile MeterRegistry registry;
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    public <R> R record(Class<?> storage, String query, Supplier<R> call, ToIntFunction<R> rows) {
+        MeterRegistry meterRegistry = registry;
+        if (meterRegistry == null) {
+            return call.get();
+        }
+
+        String name = namesByStorage.computeIfAbsent(storage, QueryNames::new).resolve(query);
+        QueryMeters meters = metersByName.computeIfAbsent(name, key -> new QueryMeters(meterRegistry, key));
+        long started = System.nanoTime();
+        try {
+            R result = call.get();
+            meters.timer().record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+            meters.rows().record(rows.applyAsInt(result));
+            return result;
+        } catch (RuntimeException e) {
+            meters.timer().record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+            countError(meterRegistry, name, e);
+            throw e;
+        }
+    }
+
+    /**
+     * Measures a lazily fetched stream: the timer runs from opening the stream until it is closed, and
+     * the rows counted on the way are recorded on close. A stream that is never closed is not recorded.
+     */
+    public <R> Stream<R> recordStream(Class<?> storage, String query, Supplier<Stream<R>> call) {
+        MeterRegistry meterRegistry = registry;
+        if (meterRegistry == null) {
+            return call.get();
+        }
+
+        String name = namesByStorage.computeIfAbsent(storage, QueryNames::new).resolve(query);
+        QueryMeters meters = metersByName.computeIfAbsent(name, key -> new QueryMeters(meterRegistry, key));
+        long started = System.nanoTime();
+        Stream<R> stream;
+        try {
+            stream = call.get();
+        } catch (RuntimeException e) {
+            meters.timer().record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+            countError(meterRegistry, name, e);
+            throw e;
+        }
+        LongAdder rows = new LongAdder();
+        return stream
+                .peek(row -> rows.increment())
+                .onClose(() -> {
+                    meters.timer().record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+                    meters.rows().record(rows.sum());
+                });
+    }
+
+    private static void countError(MeterRegistry registry, String name, RuntimeException e) {
+        Counter.builder(QUERY_ERRORS)
+                .description("Storage queries that threw an exception")
+                .tag("query", name)
+                .tag("exception", e.getClass().getSimpleName())
+                .register(registry)
+                .increment();
+    }
+
+    private record QueryMeters(Timer timer, DistributionSummary rows) {
+        private QueryMeters(MeterRegistry registry, String name) {
+            this(Timer.builder(QUERY_TIMER)
+                            .description("Execution time of storage queries")
+                            .tag("query", name)
+                            .publishPercentileHistogram()
+                            .serviceLevelObjectives(TIMER_SLOS)
+                            .minimumExpectedValue(TIMER_SLOS[0])
+                            .maximumExpectedValue(MAX_EXPECTED_DURATION)
+                            .register(registry),
+                    DistributionSummary.builder(QUERY_ROWS)
+                            .description("Rows read or written by storage queries")
+                            .baseUnit("rows")
+                            .tag("query", name)
+                            .publishPercentileHistogram()
+                            .serviceLevelObjectives(ROWS_SLOS)
+                            .minimumExpectedValue(1.0)
+                            .maximumExpectedValue(MAX_EXPECTED_ROWS)
+                            .register(registry));
+        }
+    }
+
+    /**
+     * SQL of the `*_QUERY` constants declared by one storage class, mapped to query names.
+     */
+    private static final class QueryNames {
+        private final Map<String, String> namesBySql = new HashMap<>();
+        private final Map<String, String> namesByTemplatePrefix = new HashMap<>();
+        private final String unnamed;
+
+        private QueryNames(Class<?> storage) {
+            String prefix = storage.getSimpleName() + ".";
+            unnamed = prefix + "unnamed";
+            for (Field field : storage.getDeclaredFields()) {
+                if (!Modifier.isStatic(field.getModifiers()) || field.getType() != String.class
+                        || !field.getName().endsWith(QUERY_SUFFIX)) {
+                    continue;
+                }
+                try {
+                    field.setAccessible(true);
+                    String sql = (String) field.get(null);
+                    int placeholder = sql.indexOf(PLACEHOLDER);
+                    if (placeholder < 0) {
+                        namesBySql.putIfAbsent(sql, prefix + field.getName());
+                    } else {
+                        namesByTemplatePrefix.putIfAbsent(sql.substring(0, placeholder), prefix + field.getName());
+                    }
+                } catch (IllegalAccessException | RuntimeException e) {
+                    log.warn("Cannot read query constant {}.{}", storage.getSimpleName(), field.getName(), e);
+                }
+            }
+        }
+
+        private String resolve(String sql) {
+            String name = namesBySql.get(sql);
+            if (name != null) {
+                return name;
+            }
+            for (Map.Entry<String, String> template : namesByTemplatePrefix.entrySet()) {
+                if (sql.startsWith(template.getKey())) {
+                    return template.getValue();
+                }
+            }
+            return unnamed;
+        }
+    }
+}
@@ -1,53 +1,110 @@
 package ru.yandex.practicum.filmorate.storage.db.film;
 
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.dao.DuplicateKeyException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.exception.DuplicatedDataException;
 import ru.yandex.practicum.filmorate.exception.InternalServerException;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.model.EntityVersion;
 import ru.yandex.practicum.filmorate.model.film.Film;
 import ru.yandex.practicum.filmorate.model.film.Genre;
+import ru.yandex.practicum.filmorate.model.film.Like;
 import ru.yandex.practicum.filmorate.model.film.Mpa;
 import ru.yandex.practicum.filmorate.storage.db.BaseDbStorage;
-import ru.yandex.practicum.filmorate.storage.mappers.film.FilmRowMapper;
+import ru.yandex.practicum.filmorate.storage.index.AdjacencyUpdate;
+import ru.yandex.practicum.filmorate.storage.index.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.storage.index.IndexRefresher;
+import ru.yandex.practicum.filmorate.storage.index.LikeMatrix;
+import ru.yandex.practicum.filmorate.storage.index.UserExistenceIndex;
+import ru.yandex.practicum.filmorate.util.FormatUtil;
 
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Slf4j
 @Repository
 public class FilmDbStorage extends BaseDbStorage<Film> implements FilmStorage {
 
+    private static final int RECOMMENDATION_NEIGHBOURS = 20;
+    private static final int RECOMMENDATION_MAX_FAN_OUT = 10_000;
+
     private final MpaStorage mpaStorage;
     private final GenreStorage genreStorage;
+    private final LikeMatrix likeMatrix;
+    private final FilmSearchIndex searchIndex;
+    private final UserExistenceIndex userExistenceIndex;
+    private final IndexRefresher likedFilmsRefresher;
+    private final IndexRefresher likedUsersRefresher;
+    private final IndexRefresher searchRefresher;
 
     private static final String FIND_ALL_QUERY = """
-            SELECT f.*, m.name as mpa_name,
-                   COUNT(l.user_id) as likes,
-                   GROUP_CONCAT(g.id) as genre_ids,
-                   GROUP_CONCAT(g.name) as genre_names
+            SELECT f.*, m.name as mpa_name, f.like_count as likes, fg.genre_ids
             FROM films f
             JOIN mpa m ON f.mpa_rating_id = m.id
-            LEFT JOIN likes l ON f.id = l.film_id
-            LEFT JOIN film_genres fg ON f.id = fg.film_id
-            LEFT JOIN genres g ON fg.genre_id = g.id
-            GROUP BY f.id, m.name
+            LEFT JOIN (SELECT film_id, GROUP_CONCAT(genre_id ORDER BY genre_id SEPARATOR ',') as genre_ids
+                       FROM film_genres
+                       GROUP BY film_id) fg ON f.id = fg.film_id
+            ORDER BY f.id
+            """;
+    private static final String FIND_PAGE_QUERY = """
+            SELECT f.*, m.name as mpa_name, f.like_count as likes
+            FROM (SELECT *
+                  FROM films
+                  WHERE id > ?
+                  ORDER BY id
+                  LIMIT ?) f
+            JOIN mpa m ON f.mpa_rating_id = m.id
+            ORDER BY f.id;
             """;
     private static final String INSERT_QUERY = """
             INSERT INTO films(name, description, release_date, duration, mpa_rating_id)
             VALUES (?, ?, ?, ?, ?);
             """;
+    private static final String INSERT_MANY_QUERY = """
+            INSERT INTO films(name, description, release_date, duration, mpa_rating_id)
+            VALUES %s;
+            """;
+    private static final String INSERT_MANY_VALUES_ROW = "(?, ?, ?, ?, ?)";
     private static final String UPDATE_QUERY = """
             UPDATE films
-            SET name = ?, description = ?, release_date = ?, duration = ?, mpa_rating_id = ?
+            SET name = ?, description = ?, release_date = ?, duration = ?, mpa_rating_id = ?,
+                version = version + 1
             WHERE id = ?;
             """;
+    private static final String FIND_GENRE_IDS_QUERY = """
+            SELECT genre_id
+            FROM film_genres
+            WHERE film_id = ?;
+            """;
     private static final String DELETE_GENRES_QUERY = """
             DELETE FROM film_genres
-            WHERE film_id = ?;
+            WHERE film_id = ? AND genre_id = ?;
             """;
     private static final String INSERT_GENRES_QUERY = """
             INSERT INTO film_genres (film_id, genre_id)
@@ -61,38 +118,209 @@ public class FilmDbStorage extends BaseDbStorage<Film> implements FilmStorage {
             DELETE FROM likes
             WHERE film_id = ? AND user_id = ?;
             """;
+    private static final String FIND_ALL_LIKES_QUERY = """
+            SELECT user_id, film_id
+            FROM likes
+            ORDER BY user_id, film_id;
+            """;
+    private static final String FIND_LIKES_BY_USER_IDS_QUERY = """
+            SELECT user_id, film_id
+            FROM likes
+            WHERE user_id = ANY(?)
+            ORDER BY user_id, film_id;
+            """;
+    private static final String FIND_LIKES_BY_FILM_IDS_QUERY = """
+            SELECT film_id, user_id
+            FROM likes
+            WHERE film_id = ANY(?)
+            ORDER BY film_id, user_id;
+            """;
+    private static final String FIND_ALL_SEARCH_TEXTS_QUERY = """
+            SELECT id, name, description
+            FROM films
+            ORDER BY id;
+            """;
+    private static final String FIND_SEARCH_TEXTS_BY_IDS_QUERY = """
+            SELECT id, name, description
+            FROM films
+            WHERE id = ANY(?);
+            """;
+    private static final String CHECK_FILM_EXISTS_QUERY = """
+            SELECT EXISTS(SELECT 1 FROM films WHERE id = ?);
+            """;
+    private static final String CHECK_USER_EXISTS_QUERY = """
+            SELECT EXISTS(SELECT 1 FROM users WHERE id = ?);
+            """;
+    private static final String INSERT_LIKE_IF_ABSENT_QUERY = """
+            INSERT INTO likes (film_id, user_id)
+            SELECT f.id, u.id
+            FROM films f, users u
+            WHERE f.id = ? AND u.id = ?
+              AND NOT EXISTS(SELECT 1 FROM likes l WHERE l.film_id = f.id AND l.user_id = u.id);
+            """;
+    private static final String ADD_LIKE_COUNT_QUERY = """
+            UPDATE films
+            SET like_count = like_count + ?, version = version + 1
+            WHERE id = ?;
+            """;
+    private static final String INCREMENT_LIKE_COUNT_QUERY = """
+            UPDATE films
+            SET like_count = like_count + 1, version = version + 1
+            WHERE id = ?;
+            """;
+    private static final String DECREMENT_LIKE_COUNT_QUERY = """
+            UPDATE films
+            SET like_count = like_count - 1, version = version + 1
+            WHERE id = ?;
+            """;
+    private static final String BUMP_VERSION_QUERY = """
+            UPDATE films
+            SET version = version + 1
+            WHERE id = ?;
+            """;
+    private static final String FIND_VERSION_QUERY = """
+            SELECT version
+            FROM films
+            WHERE id = ?;
+            """;
     private static final String FIND_BY_ID_QUERY = """
-            SELECT f.*, m.name as mpa_name, COUNT(l.user_id) as likes
+            SELECT f.*, m.name as mpa_name, f.like_count as likes
             FROM films f
             JOIN mpa m ON f.mpa_rating_id = m.id
-            LEFT JOIN likes l ON f.id = l.film_id
             WHERE f.id = ?
-            GROUP BY f.id
             """;
-    private static final String FIND_POPULAR_QUERY = FIND_ALL_QUERY + """
-            ORDER BY likes DESC
+    private static final String FIND_BY_IDS_QUERY = """
+            SELECT f.*, m.name as mpa_name, f.like_count as likes
+            FROM films f
+            JOIN mpa m ON f.mpa_rating_id = m.id
+            WHERE f.id = ANY(?)
+            """;
+    private static final String FIND_POPULAR_QUERY = """
+            SELECT id, version
+            FROM films
+            ORDER BY like_count DESC, id
             LIMIT ?;
             """;
+    private static final String FIND_POPULAR_FILTERED_QUERY = """
+            SELECT id, version
+            FROM films
+            WHERE %s
+            ORDER BY like_count DESC, id
+            LIMIT ?;
+            """;
+    private static final String GENRE_FILTER = "id IN (SELECT film_id FROM film_genres WHERE genre_id = ?)";
+    private static final String YEAR_FILTER = "release_date >= ? AND release_date < ?";
+    private static final String FIND_POPULAR_BY_GENRE_QUERY = FIND_POPULAR_FILTERED_QUERY.formatted(GENRE_FILTER);
+    private static final String FIND_POPULAR_BY_YEAR_QUERY = FIND_POPULAR_FILTERED_QUERY.formatted(YEAR_FILTER);
+    private static final String FIND_POPULAR_BY_GENRE_AND_YEAR_QUERY =
+            FIND_POPULAR_FILTERED_QUERY.formatted(GENRE_FILTER + " AND " + YEAR_FILTER);
 
-    public FilmDbStorage(JdbcTemplate jdbc, RowMapper<Film> mapper, MpaStorage mpaStorage, GenreStorage genreStorage) {
+    public FilmDbStorage(JdbcTemplate jdbc, RowMapper<Film> mapper, MpaStorage mpaStorage, GenreStorage genreStorage,
+                         LikeMatrix likeMatrix, FilmSearchIndex searchIndex,
+                         UserExistenceIndex userExistenceIndex) {
         super(jdbc, mapper);
         this.mpaStorage = mpaStorage;
         this.genreStorage = genreStorage;
+        this.likeMatrix = likeMatrix;
+        this.searchIndex = searchIndex;
+        this.userExistenceIndex = userExistenceIndex;
+        this.likedFilmsRefresher = new IndexRefresher(this::reloadLikedFilms);
+        this.likedUsersRefresher = new IndexRefresher(this::reloadLikedUsers);
+        this.searchRefresher = new IndexRefresher(this::reloadSearchTexts);
+    }
+
+    @PostConstruct
+    public void rebuildIndexes() {
+        rebuildLikeMatrix();
+        rebuildSearchIndex();
+    }
+
+    public void rebuildLikeMatrix() {
+        likedFilmsRefresher.rebuild(() -> likedUsersRefresher.rebuild(() -> {
+            LikeMatrix.Builder builder = likeMatrix.builder();
+            forEachRow(FIND_ALL_LIKES_QUERY, resultSet -> {
+                builder.add(resultSet.getLong("user_id"), resultSet.getLong("film_id"));
+            });
+            builder.publish();
+        }));
+    }
+
+    private void reloadLikedFilms(long[] userIds) {
+        AdjacencyUpdate update = likeMatrix.updateLikedFilms(userIds);
+        forEachRow(FIND_LIKES_BY_USER_IDS_QUERY, resultSet -> {
+            update.add(resultSet.getLong("user_id"), resultSet.getLong("film_id"));
+        }, (Object) toArray(userIds));
+        update.apply();
+    }
+
+    private void reloadLikedUsers(long[] filmIds) {
+        AdjacencyUpdate update = likeMatrix.updateLikedUsers(filmIds);
+        forEachRow(FIND_LIKES_BY_FILM_IDS_QUERY, resultSet -> {
+            update.add(resultSet.getLong("film_id"), resultSet.getLong("user_id"));
+        }, (Object) toArray(filmIds));
+        update.apply();
+    }
+
+    private void refreshLikeMatrixAfterCommit(Collection<Long> filmIds, Collection<Long> userIds) {
+        likedUsersRefresher.refreshAfterCommit(toPrimitiveArray(filmIds));
+        likedFilmsRefresher.refreshAfterCommit(toPrimitiveArray(userIds));
+    }
+
+    public void rebuildSearchIndex() {
+        searchRefresher.rebuild(() -> {
+            FilmSearchIndex.Builder builder = searchIndex.builder();
+            jdbc.query(connection -> {
+                PreparedStatement ps = connection.prepareStatement(FIND_ALL_SEARCH_TEXTS_QUERY);
+                ps.setFetchSize(STREAM_FETCH_SIZE);
+                return ps;
+            }, resultSet -> {
+                builder.add(resultSet.getLong("id"), resultSet.getString("name"), resultSet.getString("description"));
+            });
+            builder.publish();
+        });
+    }
+
+    private void reloadSearchTexts(long[] filmIds) {
+        forEachRow(FIND_SEARCH_TEXTS_BY_IDS_QUERY, resultSet -> {
+            searchIndex.putFilm(resultSet.getLong("id"), resultSet.getString("name"),
+                    resultSet.getString("description"));
+        }, (Object) toArray(filmIds));
     }
 
     @Override
     public Collection<Film> getFilms() {
-        Collection<Film> films = findMany(FIND_ALL_QUERY);
-        films.forEach(film -> {
-            List<Long> genreIds = genreStorage.getGenresByFilmId(film.getId()).stream()
-                    .map(Genre::getId)
-                    .toList();
-            film.setGenreIds(genreIds);
-        });
+        return findMany(FIND_ALL_QUERY, this::mapRowWithGenreIds);
+    }
+
+    @Override
+    public List<Film> getFilmsPage(long afterId, int limit) {
+        List<Film> films = findMany(FIND_PAGE_QUERY, afterId, limit);
+        setFilmsGenreIds(films);
         return films;
     }
 
     @Override
+    public Stream<Film> streamFilms() {
+        return stream(FIND_ALL_QUERY, this::mapRowWithGenreIds);
+    }
+
+    private Film mapRowWithGenreIds(ResultSet resultSet, int rowNum) throws SQLException {
+        Film film = mapper.mapRow(resultSet, rowNum);
+        String genreIds = resultSet.getString("genre_ids");
+
+        if (genreIds != null && !genreIds.isEmpty()) {
+            film.setGenreIds(Arrays.stream(genreIds.split(","))
+                    .map(Long::valueOf)
+                    .toList());
+        } else {
+            film.setGenreIds(Collections.emptyList());
+        }
+
+        return film;
+    }
+
+    @Override
+    @Transactional
     public Film createFilm(Film film) {
         try {
             long id = insert(
@@ -104,7 +332,10 @@ public class FilmDbStorage extends BaseDbStorage<Film> implements FilmStorage {
                     film.getMpa().getId());
 
             film.setId(id);
-            updateFilmGenres(film);
+            Set<Long> genreIds = getDistinctGenreIds(film);
+            batchUpdateGenres(INSERT_GENRES_QUERY, id, genreIds);
+            film.setGenreIds(List.copyOf(genreIds));
+            searchRefresher.refreshAfterCommit(id);
 
             log.info("Film created successfully: {}", film);
             return film;
@@ -115,6 +346,55 @@ public class FilmDbStorage extends BaseDbStorage<Film> implements FilmStorage {
     }
 
     @Override
+    @Transactional
+    public List<Film> createFilms(List<Film> films) {
+        if (films.isEmpty()) {
+            return films;
+        }
+
+        String query = String.format(INSERT_MANY_QUERY,
+                String.join(", ", Collections.nCopies(films.size(), INSERT_MANY_VALUES_ROW)));
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        measure(query, () -> jdbc.update(connection -> {
+            PreparedStatement ps = connection.prepareStatement(query, Statement.RETURN_GENERATED_KEYS);
+            int idx = 1;
+            for (Film film : films) {
+                ps.setObject(idx++, film.getName());
+                ps.setObject(idx++, film.getDescription());
+                ps.setObject(idx++, film.getReleaseDate());
+                ps.setObject(idx++, film.getDuration());
+                ps.setObject(idx++, film.getMpa().getId());
+            }
+            return ps;
+        }, keyHolder), Integer::intValue);
+
+        List<Map<String, Object>> keys = keyHolder.getKeyList();
+        if (keys.size() != films.size()) {
+            throw new InternalServerException("Failed to save data");
+        }
+
+        List<Object[]> genreBatchArgs = new ArrayList<>();
+        for (int idx = 0; idx < films.size(); idx++) {
+            Film film = films.get(idx);
+            film.setId(((Number) keys.get(idx).values().iterator().next()).longValue());
+
+            Set<Long> genreIds = getDistinctGenreIds(film);
+            genreIds.forEach(genreId -> genreBatchArgs.add(new Object[]{film.getId(), genreId}));
+            film.setGenreIds(List.copyOf(genreIds));
+        }
+        if (!genreBatchArgs.isEmpty()) {
+            batchUpdate(INSERT_GENRES_QUERY, genreBatchArgs);
+        }
+        searchRefresher.refreshAfterCommit(films.stream()
+                .mapToLong(Film::getId)
+                .toArray());
+
+        log.info("Films created successfully: {}", films.size());
+        return films;
+    }
+
+    @Override
+    @Transactional
     public Film updateFilm(Film film) {
         try {
             update(
@@ -128,6 +408,7 @@ public class FilmDbStorage extends BaseDbStorage<Film> implements FilmStorage {
             );
 
             updateFilmGenres(film);
+            searchRefresher.refreshAfterCommit(film.getId());
 
             Mpa updatedMpa = mpaStorage.getMpaById(film.getMpa().getId())
                     .orElseThrow(() -> new NotFoundException("MPA rating not found"));
@@ -143,25 +424,49 @@ public class FilmDbStorage extends BaseDbStorage<Film> implements FilmStorage {
     }
 
     @Override
+    @Transactional
     public void updateFilmGenres(Film film) {
-        if (film.getGenreIds() != null && !film.getGenreIds().isEmpty()) {
-            delete(DELETE_GENRES_QUERY, film.getId());
-
-            for (Long genreId : film.getGenreIds()) {
-                try {
-                    update(
-                            INSERT_GENRES_QUERY,
-                            film.getId(),
-                            genreId
-                    );
-                    log.info("Adding genre: genreId={}, filmId={}", genreId, film.getId());
-                } catch (DuplicateKeyException e) {
-                    log.warn("Unable to add duplicate genre: genreId={}, filmId={}", genreId, film.getId());
-                }
-            }
-        } else {
-            delete(DELETE_GENRES_QUERY, film.getId());
+        Set<Long> genreIds = getDistinctGenreIds(film);
+        Set<Long> currentGenreIds = new HashSet<>(
+                findValues(FIND_GENRE_IDS_QUERY, Long.class, film.getId()));
+
+        List<Long> removedGenreIds = currentGenreIds.stream()
+                .filter(genreId -> !genreIds.contains(genreId))
+                .toList();
+        List<Long> addedGenreIds = genreIds.stream()
+                .filter(genreId -> !currentGenreIds.contains(genreId))
+                .toList();
+
+        batchUpdateGenres(DELETE_GENRES_QUERY, film.getId(), removedGenreIds);
+        batchUpdateGenres(INSERT_GENRES_QUERY, film.getId(), addedGenreIds);
+        if (!removedGenreIds.isEmpty() || !addedGenreIds.isEmpty()) {
+            update(BUMP_VERSION_QUERY, film.getId());
+        }
+        film.setGenreIds(List.copyOf(genreIds));
+
+        log.debug("Film genres updated: filmId={}, added={}, removed={}",
+                film.getId(), addedGenreIds, removedGenreIds);
+    }
+
+    private Set<Long> getDistinctGenreIds(Film film) {
+        Set<Long> genreIds = new TreeSet<>();
+        if (film.getGenreIds() != null) {
+            film.getGenreIds().stream()
+                    .filter(Objects::nonNull)
+                    .forEach(genreIds::add);
         }
+        return genreIds;
+    }
+
+    private void batchUpdateGenres(String query, Long filmId, Collection<Long> genreIds) {
+        if (genreIds.isEmpty()) {
+            return;
+        }
+
+        List<Object[]> batchArgs = genreIds.stream()
+                .map(genreId -> new Object[]{filmId, genreId})
+                .toList();
+        batchUpdate(query, batchArgs);
     }
 
     @Override
@@ -179,29 +484,187 @@ public class FilmDbStorage extends BaseDbStorage<Film> implements FilmStorage {
     }
 
     @Override
+    @Transactional
     public void addLike(Long filmId, Long userId) {
         log.debug("Adding like: filmId={}, userId={}", filmId, userId);
-        update(INSERT_LIKES_QUERY, filmId, userId);
+        try {
+            execute(INSERT_LIKES_QUERY, filmId, userId);
+        } catch (DuplicateKeyException e) {
+            throw new DuplicatedDataException(
+                    String.format("User %s already liked film %s", userId, filmId));
+        } catch (DataIntegrityViolationException e) {
+            // The existence index can still list a user whose row is gone, so the database decides here.
+            validateFilmAndUserRowsExist(filmId, userId);
+            throw new DuplicatedDataException(
+                    String.format("Like of user %s on film %s conflicts with a concurrent change", userId, filmId));
+        }
+        update(INCREMENT_LIKE_COUNT_QUERY, filmId);
+        refreshLikeMatrixAfterCommit(List.of(filmId), List.of(userId));
         log.debug("Like added successfully: filmId={}", filmId);
-
     }
 
     @Override
+    @Transactional
     public void removeLike(Long filmId, Long userId) {
         log.debug("Removing like: filmId={}, userId={}", filmId, userId);
-        update(DELETE_LIKES_QUERY, filmId, userId);
+        if (execute(DELETE_LIKES_QUERY, filmId, userId) == 0) {
+            validateFilmAndUserExist(filmId, userId);
+            throw new NotFoundException(String.format("Like of user %s on film %s not found", userId, filmId));
+        }
+        update(DECREMENT_LIKE_COUNT_QUERY, filmId);
+        refreshLikeMatrixAfterCommit(List.of(filmId), List.of(userId));
         log.debug("Like removed successfully: filmId={}", filmId);
     }
 
     @Override
-    public List<Film> getPopularFilms(int count) {
-        List<Film> films = jdbc.query(FIND_POPULAR_QUERY, new FilmRowMapper(), count);
+    @Transactional
+    public void applyLikes(Collection<Like> addedLikes, Collection<Like> removedLikes) {
+        Map<Long, Long> likeCountDeltas = new HashMap<>();
+        Set<Long> changedUserIds = new HashSet<>();
+        applyLikeBatch(INSERT_LIKE_IF_ABSENT_QUERY, addedLikes, 1, likeCountDeltas, changedUserIds);
+        applyLikeBatch(DELETE_LIKES_QUERY, removedLikes, -1, likeCountDeltas, changedUserIds);
+        refreshLikeMatrixAfterCommit(likeCountDeltas.keySet(), changedUserIds);
+
+        List<Object[]> batchArgs = likeCountDeltas.entrySet().stream()
+                .filter(entry -> entry.getValue() != 0)
+                .map(entry -> new Object[]{entry.getValue(), entry.getKey()})
+                .toList();
+        if (!batchArgs.isEmpty()) {
+            batchUpdate(ADD_LIKE_COUNT_QUERY, batchArgs);
+        }
+        log.debug("Likes applied: added={}, removed={}, films={}",
+                addedLikes.size(), removedLikes.size(), batchArgs.size());
+    }
+
+    private void applyLikeBatch(String query, Collection<Like> likes, int delta, Map<Long, Long> likeCountDeltas,
+                                Set<Long> changedUserIds) {
+        if (likes.isEmpty()) {
+            return;
+        }
+
+        List<Like> batch = List.copyOf(likes);
+        int[] updateCounts = batchUpdate(query, batch.stream()
+                .map(like -> new Object[]{like.getFilmId(), like.getUserId()})
+                .toList());
+        for (int idx = 0; idx < updateCounts.length; idx++) {
+            if (updateCounts[idx] > 0) {
+                Like like = batch.get(idx);
+                likeCountDeltas.merge(like.getFilmId(), (long) delta, Long::sum);
+                changedUserIds.add(like.getUserId());
+            }
+        }
+    }
+
+    @Override
+    public void validateFilmAndUserExist(Long filmId, Long userId) {
+        validateUserExists(userId);
+        if (!findValue(CHECK_FILM_EXISTS_QUERY, Boolean.class, filmId).orElse(false)) {
+            throw new NotFoundException(FormatUtil.formatNotFoundMessage("Film", filmId));
+        }
+    }
+
+    private void validateFilmAndUserRowsExist(Long filmId, Long userId) {
+        if (!findValue(CHECK_USER_EXISTS_QUERY, Boolean.class, userId).orElse(false)) {
+            throw new NotFoundException(FormatUtil.formatNotFoundMessage("User", userId));
+        }
+        if (!findValue(CHECK_FILM_EXISTS_QUERY, Boolean.class, filmId).orElse(false)) {
+            throw new NotFoundException(FormatUtil.formatNotFoundMessage("Film", filmId));
+        }
+    }
+
+    private void validateUserExists(Long userId) {
+        if (!userExistenceIndex.contains(userId)) {
+            throw new NotFoundException(FormatUtil.formatNotFoundMessage("User", userId));
+        }
+    }
+
+    @Override
+    public List<Film> getPopularFilms(int count, Long genreId, Integer year) {
+        return getFilmsByIds(getPopularFilmVersions(count, genreId, year).stream()
+                .map(EntityVersion::getId)
+                .toList());
+    }
+
+    @Override
+    public List<EntityVersion> getPopularFilmVersions(int count, Long genreId, Integer year) {
+        if (genreId == null && year == null) {
+            return findMany(FIND_POPULAR_QUERY, VERSION_MAPPER, count);
+        } else if (year == null) {
+            return findMany(FIND_POPULAR_BY_GENRE_QUERY, VERSION_MAPPER, genreId, count);
+        }
+
+        // A half-open date range keeps release_date sargable, unlike EXTRACT(YEAR FROM release_date).
+        LocalDate from = LocalDate.of(year, 1, 1);
+        LocalDate to = from.plusYears(1);
+        return genreId == null
+                ? findMany(FIND_POPULAR_BY_YEAR_QUERY, VERSION_MAPPER, from, to, count)
+                : findMany(FIND_POPULAR_BY_GENRE_AND_YEAR_QUERY, VERSION_MAPPER, genreId, from, to, count);
+    }
+
+    @Override
+    public Optional<Long> getFilmVersion(Long id) {
+        return findValue(FIND_VERSION_QUERY, Long.class, id);
+    }
+
+    @Override
+    public List<Film> getFilmsByIds(List<Long> ids) {
+        return findFilmsInOrder(toPrimitiveArray(ids));
+    }
+
+    @Override
+    public List<Film> getRecommendedFilms(Long userId, int limit) {
+        validateUserExists(userId);
+
+        long[] rankedIds = likeMatrix.recommendFilms(
+                userId, limit, RECOMMENDATION_NEIGHBOURS, RECOMMENDATION_MAX_FAN_OUT);
+        return findFilmsInOrder(rankedIds);
+    }
+
+    @Override
+    public List<Film> searchFilms(String query, int limit) {
+        long[] rankedIds = searchIndex.search(query, limit, filmId -> likeMatrix.getLikedUsers(filmId).length);
+        return findFilmsInOrder(rankedIds);
+    }
+
+    private List<Film> findFilmsInOrder(long[] filmIds) {
+        if (filmIds.length == 0) {
+            return List.of();
+        }
+
+        Long[] ids = toArray(filmIds);
+        Map<Long, Film> filmsById = findMany(FIND_BY_IDS_QUERY, (Object) ids).stream()
+                .collect(Collectors.toMap(Film::getId, Function.identity()));
+        List<Film> films = Arrays.stream(ids)
+                .map(filmsById::get)
+                .filter(Objects::nonNull)
+                .toList();
+        setFilmsGenreIds(films);
+        return films;
+    }
+
+    private static Long[] toArray(long[] ids) {
+        return Arrays.stream(ids)
+                .boxed()
+                .toArray(Long[]::new);
+    }
+
+    private static long[] toPrimitiveArray(Collection<Long> ids) {
+        return ids.stream()
+                .mapToLong(Long::longValue)
+                .toArray();
+    }
+
+    private void setFilmsGenreIds(List<Film> films) {
+        List<Long> filmIds = films.stream()
+                .map(Film::getId)
+                .toList();
+        Map<Long, List<Genre>> genresByFilmId = genreStorage.getGenresByFilmIds(filmIds);
+
         films.forEach(film -> {
-            List<Long> genreIds = genreStorage.getGenresByFilmId(film.getId()).stream()
+            List<Long> genreIds = genresByFilmId.getOrDefault(film.getId(), List.of()).stream()
                     .map(Genre::getId)
                     .toList();
             film.setGenreIds(genreIds);
         });
-        return films;
     }
 }
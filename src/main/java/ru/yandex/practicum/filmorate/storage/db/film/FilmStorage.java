@@ -1,17 +1,26 @@
 package ru.yandex.practicum.filmorate.storage.db.film;
 
+import ru.yandex.practicum.filmorate.model.EntityVersion;
 import ru.yandex.practicum.filmorate.model.film.Film;
+import ru.yandex.practicum.filmorate.model.film.Like;
 
 import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface FilmStorage {
 
     Collection<Film> getFilms();
 
+    List<Film> getFilmsPage(long afterId, int limit);
+
+    Stream<Film> streamFilms();
+
     Film createFilm(Film film);
 
+    List<Film> createFilms(List<Film> films);
+
     Film updateFilm(Film film);
 
     void updateFilmGenres(Film film);
@@ -22,6 +31,20 @@ public interface FilmStorage {
 
     void removeLike(Long filmId, Long userId);
 
-    List<Film> getPopularFilms(int count);
+    void applyLikes(Collection<Like> addedLikes, Collection<Like> removedLikes);
+
+    void validateFilmAndUserExist(Long filmId, Long userId);
+
+    List<Film> getPopularFilms(int count, Long genreId, Integer year);
+
+    List<EntityVersion> getPopularFilmVersions(int count, Long genreId, Integer year);
+
+    Optional<Long> getFilmVersion(Long id);
+
+    List<Film> getFilmsByIds(List<Long> ids);
+
+    List<Film> getRecommendedFilms(Long userId, int limit);
+
+    List<Film> searchFilms(String query, int limit);
 
 }
\ No newline at end of file
@@ -1,14 +1,19 @@
 package ru.yandex.practicum.filmorate.storage.db.film;
 
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Repository;
 import ru.yandex.practicum.filmorate.model.film.Genre;
+import ru.yandex.practicum.filmorate.storage.cache.ReferenceCache;
 import ru.yandex.practicum.filmorate.storage.db.BaseDbStorage;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @Slf4j
@@ -16,43 +21,78 @@ import java.util.Optional;
 public class GenreDbStorage extends BaseDbStorage<Genre> implements GenreStorage {
 
     private static final String FIND_ALL_QUERY = """
-        SELECT *
-        FROM genres;
-        """;
-    private static final String FIND_BY_ID_QUERY = """
         SELECT *
         FROM genres
-        WHERE id = ?;
+        ORDER BY id;
         """;
     private static final String FIND_FILM_GENRES_QUERY = """
-        SELECT g.id, g.name
-        FROM genres g
-        JOIN film_genres fg ON g.id = fg.genre_id
-        WHERE fg.film_id = ?;
+        SELECT genre_id
+        FROM film_genres
+        WHERE film_id = ?
+        ORDER BY genre_id;
+        """;
+    private static final String FIND_FILMS_GENRES_QUERY = """
+        SELECT film_id, genre_id
+        FROM film_genres
+        WHERE film_id = ANY(?)
+        ORDER BY film_id, genre_id;
         """;
 
+    private volatile ReferenceCache<Genre> cache;
 
     public GenreDbStorage(JdbcTemplate jdbc, RowMapper<Genre> mapper) {
         super(jdbc, mapper);
     }
 
+    @PostConstruct
+    @Override
+    public void refresh() {
+        cache = new ReferenceCache<>(findMany(FIND_ALL_QUERY), Genre::getId);
+        log.info("Genres cache loaded: {} entries", cache.values().size());
+    }
+
     @Override
     public Collection<Genre> getAllGenres() {
-        return findMany(FIND_ALL_QUERY);
+        return cache.values().stream()
+                .map(GenreDbStorage::copyOf)
+                .toList();
     }
 
     @Override
     public Optional<Genre> getGenreById(Long genreId) {
-        return findOne(FIND_BY_ID_QUERY, genreId);
+        return cache.get(genreId)
+                .map(GenreDbStorage::copyOf);
     }
 
     @Override
     public List<Genre> getGenresByFilmId(Long filmId) {
-        return jdbc.query(FIND_FILM_GENRES_QUERY, (rs, rowNum) -> {
-            Genre genre = new Genre();
-            genre.setId(rs.getLong("id"));
-            genre.setName(rs.getString("name"));
-            return genre;
-        }, filmId);
+        return findValues(FIND_FILM_GENRES_QUERY, Long.class, filmId).stream()
+                .map(this::getCachedGenre)
+                .toList();
+    }
+
+    @Override
+    public Map<Long, List<Genre>> getGenresByFilmIds(Collection<Long> filmIds) {
+        Map<Long, List<Genre>> genresByFilmId = new HashMap<>();
+        if (filmIds.isEmpty()) {
+            return genresByFilmId;
+        }
+
+        forEachRow(FIND_FILMS_GENRES_QUERY, resultSet -> {
+            Genre genre = getCachedGenre(resultSet.getLong("genre_id"));
+            genresByFilmId.computeIfAbsent(resultSet.getLong("film_id"), filmId -> new ArrayList<>())
+                    .add(genre);
+        }, (Object) filmIds.toArray(Long[]::new));
+
+        return genresByFilmId;
+    }
+
+    private Genre getCachedGenre(Long genreId) {
+        return getGenreById(genreId)
+                .orElseGet(() -> new Genre(genreId, "Unknown"));
+    }
+
+    private static Genre copyOf(Genre genre) {
+        return new Genre(genre.getId(), genre.getName());
     }
 }
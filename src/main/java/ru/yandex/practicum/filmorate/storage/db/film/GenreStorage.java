@@ -4,6 +4,7 @@ import ru.yandex.practicum.filmorate.model.film.Genre;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 public interface GenreStorage {
@@ -13,4 +14,8 @@ public interface GenreStorage {
     Optional<Genre> getGenreById(Long id);
 
     List<Genre> getGenresByFilmId(Long filmId);
+
+    Map<Long, List<Genre>> getGenresByFilmIds(Collection<Long> filmIds);
+
+    void refresh();
 }
@@ -1,10 +1,12 @@
 package ru.yandex.practicum.filmorate.storage.db.film;
 
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Repository;
 import ru.yandex.practicum.filmorate.model.film.Mpa;
+import ru.yandex.practicum.filmorate.storage.cache.ReferenceCache;
 import ru.yandex.practicum.filmorate.storage.db.BaseDbStorage;
 
 import java.util.Collection;
@@ -15,26 +17,38 @@ import java.util.Optional;
 public class MpaDbStorage extends BaseDbStorage<Mpa> implements MpaStorage {
 
     private static final String FIND_ALL_QUERY = """
-        SELECT *
-        FROM mpa;
-        """;
-    private static final String FIND_BY_ID_QUERY = """
         SELECT *
         FROM mpa
-        WHERE id = ?;
+        ORDER BY id;
         """;
 
+    private volatile ReferenceCache<Mpa> cache;
+
     public MpaDbStorage(JdbcTemplate jdbc, RowMapper<Mpa> mapper) {
         super(jdbc, mapper);
     }
 
+    @PostConstruct
+    @Override
+    public void refresh() {
+        cache = new ReferenceCache<>(findMany(FIND_ALL_QUERY), Mpa::getId);
+        log.info("MPA ratings cache loaded: {} entries", cache.values().size());
+    }
+
     @Override
     public Collection<Mpa> getMpas() {
-        return findMany(FIND_ALL_QUERY);
+        return cache.values().stream()
+                .map(MpaDbStorage::copyOf)
+                .toList();
     }
 
     @Override
     public Optional<Mpa> getMpaById(Long mpaId) {
-        return findOne(FIND_BY_ID_QUERY, mpaId);
+        return cache.get(mpaId)
+                .map(MpaDbStorage::copyOf);
+    }
+
+    private static Mpa copyOf(Mpa mpa) {
+        return new Mpa(mpa.getId(), mpa.getName());
     }
 }
@@ -10,4 +10,6 @@ public interface MpaStorage {
     Collection<Mpa> getMpas();
 
     Optional<Mpa> getMpaById(Long id);
-}
\ No newline at end of file
+
+    void refresh();
+}
@@ -0,0 +1,128 @@
+package ru.yandex.practicum.filmorate.storage.db.statement;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Counts the JDBC statements executed by the current thread while the scope is open.
+ *
+ * `StatementTrackingFilter` opens a scope for every HTTP request, and tests can open their own to
+ * assert how many statements an operation needs. Scopes nest: a statement is counted by every open
+ * scope of the thread. Executions are also counted per SQL text, because the same statement repeated
+ * once per row of an earlier result is the signature of an N+1 query. A batch counts as one execution.
+ *
+ * Work a request hands to another thread, such as a streamed response body, `attach`es the request's
+ * scope on that thread, so the counters are safe to update from several threads.
+ */
+public final class StatementScope implements AutoCloseable {
+    private static final ThreadLocal<StatementScope> CURRENT = new ThreadLocal<>();
+
+    private final StatementScope parent;
+    private final Map<String, Integer> executionsBySql = new ConcurrentHashMap<>();
+    private final AtomicInteger statementCount = new AtomicInteger();
+
+    private StatementScope(StatementScope parent) {
+        this.parent = parent;
+    }
+
+    public static StatementScope open() {
+        StatementScope scope = new StatementScope(CURRENT.get());
+        CURRENT.set(scope);
+        return scope;
+    }
+
+    static void record(String sql) {
+        for (StatementScope scope = CURRENT.get(); scope != null; scope = scope.parent) {
+            scope.statementCount.incrementAndGet();
+            if (sql != null) {
+                scope.executionsBySql.merge(sql, 1, Integer::sum);
+            }
+        }
+    }
+
+    /**
+     * Makes this scope current on the calling thread until the returned attachment is closed, which
+     * restores the scope the thread had before.
+     */
+    public Attachment attach() {
+        StatementScope previous = CURRENT.get();
+        CURRENT.set(this);
+        return () -> {
+            if (previous != null) {
+                CURRENT.set(previous);
+            } else {
+                CURRENT.remove();
+            }
+        };
+    }
+
+    public int getStatementCount() {
+        return statementCount.get();
+    }
+
+    public int getExecutionCount(String sql) {
+        return executionsBySql.getOrDefault(sql, 0);
+    }
+
+    public Optional<Map.Entry<String, Integer>> getMostRepeated() {
+        return executionsBySql.entrySet().stream()
+                .max(Map.Entry.comparingByValue());
+    }
+
+    public int getMaxRepeats() {
+        return getMostRepeated()
+                .map(Map.Entry::getValue)
+                .orElse(0);
+    }
+
+    public void assertStatementCountAtMost(int max) {
+        int count = statementCount.get();
+        if (count > max) {
+            throw new AssertionError(String.format("Expected at most %d statements, but %d were executed: %s",
+                    max, count, describe()));
+        }
+    }
+
+    public void assertRepeatsAtMost(int max) {
+        getMostRepeated()
+                .filter(mostRepeated -> mostRepeated.getValue() > max)
+                .ifPresent(mostRepeated -> {
+                    throw new AssertionError(String.format(
+                            "Expected every statement to run at most %d times, but %s ran %d times",
+                            max, compact(mostRepeated.getKey()), mostRepeated.getValue()));
+                });
+    }
+
+    public String describe() {
+        StringBuilder description = new StringBuilder();
+        executionsBySql.entrySet().stream()
+                .sorted(Map.Entry.<String, Integer>comparingByValue().reversed())
+                .forEach(entry -> description.append(String.format("%n  %dx %s", entry.getValue(),
+                        compact(entry.getKey()))));
+        return description.toString();
+    }
+
+    @Override
+    public void close() {
+        if (CURRENT.get() != this) {
+            throw new IllegalStateException("Statement scopes must be closed in reverse order of opening");
+        }
+        if (parent != null) {
+            CURRENT.set(parent);
+        } else {
+            CURRENT.remove();
+        }
+    }
+
+    static String compact(String sql) {
+        return sql.strip().replaceAll("\\s+", " ");
+    }
+
+    @FunctionalInterface
+    public interface Attachment extends AutoCloseable {
+        @Override
+        void close();
+    }
+}
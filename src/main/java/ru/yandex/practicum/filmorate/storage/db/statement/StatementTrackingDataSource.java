@@ -0,0 +1,173 @@
+package ru.yandex.practicum.filmorate.storage.db.statement;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Data source whose connections report every executed statement to the open `StatementScope` and log
+ * statements slower than `slowThresholdMillis` together with their bind parameters.
+ *
+ * Connections and statements are wrapped in JDK proxies; everything except statement execution and
+ * parameter binding is passed to the pooled objects unchanged.
+ */
+@Slf4j
+public class StatementTrackingDataSource extends DelegatingDataSource {
+    private static final int MAX_LOGGED_VALUE_LENGTH = 100;
+
+    private final long slowThresholdNanos;
+
+    public StatementTrackingDataSource(DataSource targetDataSource, long slowThresholdMillis) {
+        super(targetDataSource);
+        this.slowThresholdNanos = TimeUnit.MILLISECONDS.toNanos(slowThresholdMillis);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return track(super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return track(super.getConnection(username, password));
+    }
+
+    private Connection track(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{Connection.class}, new ConnectionHandler(connection));
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Handles `equals` and `hashCode` by proxy identity, which is what pooled connection holders expect.
+     */
+    private static Object invokeIdentity(Object proxy, Method method, Object[] args) {
+        return switch (method.getName()) {
+            case "equals" -> proxy == args[0];
+            case "hashCode" -> System.identityHashCode(proxy);
+            default -> null;
+        };
+    }
+
+    private final class ConnectionHandler implements InvocationHandler {
+        private final Connection target;
+
+        private ConnectionHandler(Connection target) {
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object identity = invokeIdentity(proxy, method, args);
+            if (identity != null) {
+                return identity;
+            }
+
+            Object result = StatementTrackingDataSource.invoke(target, method, args);
+            return switch (method.getName()) {
+                case "prepareStatement", "prepareCall" ->
+                        trackStatement((Connection) proxy, (Statement) result, (String) args[0]);
+                case "createStatement" -> trackStatement((Connection) proxy, (Statement) result, null);
+                default -> result;
+            };
+        }
+
+        private Object trackStatement(Connection connection, Statement statement, String sql) {
+            Class<?> type = statement instanceof CallableStatement ? CallableStatement.class
+                    : statement instanceof PreparedStatement ? PreparedStatement.class
+                    : Statement.class;
+            return Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{type},
+                    new StatementHandler(connection, statement, sql));
+        }
+    }
+
+    private final class StatementHandler implements InvocationHandler {
+        private final Connection connection;
+        private final Statement target;
+        private final String sql;
+        private final List<Object> parameters = new ArrayList<>();
+
+        private StatementHandler(Connection connection, Statement target, String sql) {
+            this.connection = connection;
+            this.target = target;
+            this.sql = sql;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object identity = invokeIdentity(proxy, method, args);
+            if (identity != null) {
+                return identity;
+            }
+
+            String name = method.getName();
+            if (name.equals("getConnection")) {
+                // Spring releases the connection a statement reports, which must be the tracked one it handed out.
+                return connection;
+            }
+            if (name.startsWith("execute")) {
+                return execute(method, args);
+            }
+            if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer index) {
+                bind(index, args[1]);
+            } else if (name.equals("clearParameters")) {
+                parameters.clear();
+            }
+            return StatementTrackingDataSource.invoke(target, method, args);
+        }
+
+        private Object execute(Method method, Object[] args) throws Throwable {
+            String executedSql = sql != null || args == null || args.length == 0 ? sql : (String) args[0];
+            long started = System.nanoTime();
+            try {
+                return StatementTrackingDataSource.invoke(target, method, args);
+            } finally {
+                long elapsed = System.nanoTime() - started;
+                StatementScope.record(executedSql);
+                if (elapsed >= slowThresholdNanos && executedSql != null) {
+                    log.warn("Slow statement: {} ms, sql={}, parameters={}",
+                            TimeUnit.NANOSECONDS.toMillis(elapsed), StatementScope.compact(executedSql),
+                            describeParameters());
+                }
+            }
+        }
+
+        private void bind(int index, Object value) {
+            while (parameters.size() < index) {
+                parameters.add(null);
+            }
+            parameters.set(index - 1, value);
+        }
+
+        private List<String> describeParameters() {
+            return parameters.stream()
+                    .map(value -> {
+                        String text = String.valueOf(value);
+                        return text.length() > MAX_LOGGED_VALUE_LENGTH
+                                ? text.substring(0, MAX_LOGGED_VALUE_LENGTH) + "..."
+                                : text;
+                    })
+                    .toList();
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package ru.yandex.practicum.filmorate.storage.db.statement;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+/**
+ * Counts the statements each HTTP request executes and warns about requests that look like N+1 queries.
+ *
+ * A request is reported when it executes more than `maxPerRequest` statements in total, or when a
+ * single statement runs `maxRepeats` times or more: a count that grows with the size of an earlier
+ * result rather than staying constant per request. Streamed bodies run on the async executor; their
+ * statements count towards the request that started them, which is reported once the body is written.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "filmorate.db.statements.enabled", havingValue = "true", matchIfMissing = true)
+public class StatementTrackingFilter extends OncePerRequestFilter {
+    public static final String SCOPE_ATTRIBUTE = StatementTrackingFilter.class.getName() + ".SCOPE";
+
+    private final int maxPerRequest;
+    private final int maxRepeats;
+
+    public StatementTrackingFilter(
+            @Value("${filmorate.db.statements.max-per-request:50}") int maxPerRequest,
+            @Value("${filmorate.db.statements.max-repeats:10}") int maxRepeats
+    ) {
+        if (maxPerRequest < 1 || maxRepeats < 2) {
+            throw new IllegalArgumentException(String.format(
+                    "Statement limits must be positive and allow a repeat: maxPerRequest=%d, maxRepeats=%d",
+                    maxPerRequest, maxRepeats));
+        }
+        this.maxPerRequest = maxPerRequest;
+        this.maxRepeats = maxRepeats;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String method = request.getMethod();
+        String uri = request.getRequestURI();
+        StatementScope scope = StatementScope.open();
+        request.setAttribute(SCOPE_ATTRIBUTE, scope);
+        WebAsyncUtils.getAsyncManager(request)
+                .registerCallableInterceptor(SCOPE_ATTRIBUTE, new AsyncScopeInterceptor(method, uri, scope));
+        try (scope) {
+            chain.doFilter(request, response);
+        }
+        if (!request.isAsyncStarted()) {
+            report(method, uri, scope);
+        }
+    }
+
+    private void report(String method, String uri, StatementScope scope) {
+        Map.Entry<String, Integer> mostRepeated = scope.getMostRepeated().orElse(null);
+        if (mostRepeated != null && mostRepeated.getValue() >= maxRepeats) {
+            log.warn("Possible N+1 query: {} {} executed {} statements, {} of them: {}",
+                    method, uri, scope.getStatementCount(),
+                    mostRepeated.getValue(), StatementScope.compact(mostRepeated.getKey()));
+        } else if (scope.getStatementCount() > maxPerRequest) {
+            log.warn("{} {} executed {} statements, more than the limit of {}:{}",
+                    method, uri, scope.getStatementCount(), maxPerRequest, scope.describe());
+        }
+    }
+
+    /**
+     * Counts the statements of a `Callable` or `StreamingResponseBody` that runs on the async executor
+     * under the request's scope, and reports the request once the async work is done.
+     */
+    private final class AsyncScopeInterceptor implements CallableProcessingInterceptor {
+        private final String method;
+        private final String uri;
+        private final StatementScope scope;
+        private StatementScope.Attachment attachment;
+
+        private AsyncScopeInterceptor(String method, String uri, StatementScope scope) {
+            this.method = method;
+            this.uri = uri;
+            this.scope = scope;
+        }
+
+        @Override
+        public <T> void preProcess(NativeWebRequest request, Callable<T> task) {
+            attachment = scope.attach();
+        }
+
+        @Override
+        public <T> void postProcess(NativeWebRequest request, Callable<T> task, Object concurrentResult) {
+            if (attachment != null) {
+                attachment.close();
+                attachment = null;
+            }
+            report(method, uri, scope);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package ru.yandex.practicum.filmorate.storage.db.statement;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+
+/**
+ * Wraps every `DataSource` bean in a `StatementTrackingDataSource`.
+ *
+ * The bean itself is replaced, so the transaction manager and `JdbcTemplate` share the tracked
+ * connections and no statement bypasses the count. The wrapper is a `DelegatingDataSource` whose
+ * `unwrap` reaches the pool, which is how the actuator still finds the `HikariDataSource` for pool
+ * metrics and health. Post-processors are created before `@Value` placeholders can be resolved, so
+ * the threshold is read from the `Environment` directly.
+ */
+@Component
+@ConditionalOnProperty(name = "filmorate.db.statements.enabled", havingValue = "true", matchIfMissing = true)
+public class StatementTrackingPostProcessor implements BeanPostProcessor {
+    private final long slowThresholdMillis;
+
+    public StatementTrackingPostProcessor(Environment environment) {
+        long slowThresholdMillis = environment.getProperty("filmorate.db.statements.slow-threshold-ms",
+                Long.class, 200L);
+        if (slowThresholdMillis < 0) {
+            throw new IllegalArgumentException("Slow statement threshold must not be negative: "
+                    + slowThresholdMillis);
+        }
+        this.slowThresholdMillis = slowThresholdMillis;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof DataSource dataSource && !(bean instanceof StatementTrackingDataSource)) {
+            return new StatementTrackingDataSource(dataSource, slowThresholdMillis);
+        }
+        return bean;
+    }
+}
@@ -1,30 +1,70 @@
 package ru.yandex.practicum.filmorate.storage.db.user;
 
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.exception.InternalServerException;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.model.EntityVersion;
 import ru.yandex.practicum.filmorate.model.user.Friend;
+import ru.yandex.practicum.filmorate.model.user.User;
 import ru.yandex.practicum.filmorate.model.user.enums.FriendshipStatus;
+import ru.yandex.practicum.filmorate.storage.cache.UserCache;
 import ru.yandex.practicum.filmorate.storage.db.BaseDbStorage;
+import ru.yandex.practicum.filmorate.storage.index.AdjacencyUpdate;
+import ru.yandex.practicum.filmorate.storage.index.AfterCommit;
+import ru.yandex.practicum.filmorate.storage.index.FriendGraphIndex;
+import ru.yandex.practicum.filmorate.storage.index.IndexRefresher;
+import ru.yandex.practicum.filmorate.storage.index.TopKCounter;
+import ru.yandex.practicum.filmorate.storage.index.UserExistenceIndex;
 import ru.yandex.practicum.filmorate.util.FormatUtil;
 
+import java.util.Arrays;
 import java.util.List;
-import java.util.Optional;
 
 @Repository
 @Slf4j
 public class FriendDbStorage extends BaseDbStorage<Friend> implements FriendStorage {
 
-    public FriendDbStorage(JdbcTemplate jdbc) {
+    private final RowMapper<User> userMapper;
+    private final FriendGraphIndex graphIndex;
+    private final UserExistenceIndex existenceIndex;
+    private final UserCache userCache;
+    private final IndexRefresher graphRefresher;
+
+    public FriendDbStorage(JdbcTemplate jdbc, RowMapper<User> userMapper, FriendGraphIndex graphIndex,
+                           UserExistenceIndex existenceIndex, UserCache userCache) {
         super(jdbc);
+        this.userMapper = userMapper;
+        this.graphIndex = graphIndex;
+        this.existenceIndex = existenceIndex;
+        this.userCache = userCache;
+        this.graphRefresher = new IndexRefresher(this::reloadIndexedFriends);
     }
 
-    private static final String ADD_FRIEND_QUERY = """
-        INSERT INTO friends (user_id, friend_id, status)
-        VALUES (?, ?, ?);
+    private static final String LOCK_USERS_QUERY = """
+        SELECT id
+        FROM users
+        WHERE id IN (?, ?)
+        ORDER BY id
+        FOR UPDATE;
+        """;
+    private static final String UPSERT_FRIEND_QUERY = """
+        MERGE INTO friends (user_id, friend_id, status) KEY (user_id, friend_id)
+        VALUES (?, ?, CASE WHEN EXISTS(SELECT 1
+                                       FROM friends
+                                       WHERE user_id = ? AND friend_id = ?)
+                           THEN ? ELSE ? END);
+        """;
+    private static final String SET_FRIENDSHIP_STATUS_QUERY = """
+        UPDATE friends
+        SET status = ?
+        WHERE user_id = ? AND friend_id = ? AND status <> ?;
         """;
     private static final String REMOVE_FRIEND_QUERY = """
         DELETE FROM friends
@@ -36,50 +76,138 @@ public class FriendDbStorage extends BaseDbStorage<Friend> implements FriendStor
         WHERE user_id = ?
           AND (status = 'CONFIRMED' OR ? = false);
         """;
+    private static final String BUMP_USER_VERSIONS_QUERY = """
+        UPDATE users
+        SET version = version + 1
+        WHERE id IN (?, ?);
+        """;
+    private static final String GET_FRIEND_VERSIONS_QUERY = """
+        SELECT u.id, u.version
+        FROM friends f
+        JOIN users u ON u.id = f.friend_id
+        WHERE f.user_id = ?
+          AND (f.status = 'CONFIRMED' OR ? = false)
+        ORDER BY u.id;
+        """;
     private static final String GET_COMMON_FRIENDS_QUERY = """
         SELECT f1.friend_id
         FROM friends f1
         JOIN friends f2 ON f1.friend_id = f2.friend_id
         WHERE f1.user_id = ? AND f2.user_id = ?;
         """;
-    private static final String CHECK_USER_EXISTS_QUERY = """
-        SELECT EXISTS(SELECT 1
-                      FROM users
-                      WHERE id = ?);
+    private static final String GET_FRIEND_USERS_QUERY = """
+        SELECT u.*,
+               (SELECT GROUP_CONCAT(ff.friend_id SEPARATOR ',')
+                FROM friends ff
+                WHERE ff.user_id = u.id) AS friends_ids
+        FROM friends f
+        JOIN users u ON u.id = f.friend_id
+        WHERE f.user_id = ?
+          AND (f.status = 'CONFIRMED' OR ? = false)
+        ORDER BY u.id;
         """;
-    private static final String CHECK_FRIENDSHIP_EXISTS_QUERY = """
+    private static final String GET_COMMON_FRIEND_USERS_QUERY = """
+        SELECT u.*,
+               (SELECT GROUP_CONCAT(ff.friend_id SEPARATOR ',')
+                FROM friends ff
+                WHERE ff.user_id = u.id) AS friends_ids
+        FROM friends f1
+        JOIN friends f2 ON f1.friend_id = f2.friend_id
+        JOIN users u ON u.id = f1.friend_id
+        WHERE f1.user_id = ? AND f2.user_id = ?
+        ORDER BY u.id;
+        """;
+    private static final String GET_USERS_BY_IDS_QUERY = """
+        SELECT u.*,
+               (SELECT GROUP_CONCAT(ff.friend_id SEPARATOR ',')
+                FROM friends ff
+                WHERE ff.user_id = u.id) AS friends_ids
+        FROM users u
+        WHERE u.id = ANY(?)
+        ORDER BY u.id;
+        """;
+    private static final String GET_FRIENDS_COUNT_QUERY = """
         SELECT COUNT(*)
         FROM friends
-        WHERE user_id = ? AND friend_id = ?;
+        WHERE user_id = ?;
         """;
-    private static final String UPDATE_FRIENDSHIP_STATUS_QUERY = """
-        UPDATE friends
-        SET status = ?
-        WHERE user_id = ? AND friend_id = ?;
+    private static final String GET_ALL_FRIENDSHIPS_QUERY = """
+        SELECT user_id, friend_id
+        FROM friends
+        ORDER BY user_id, friend_id;
+        """;
+    private static final String GET_FRIENDSHIPS_BY_USER_IDS_QUERY = """
+        SELECT user_id, friend_id
+        FROM friends
+        WHERE user_id = ANY(?)
+        ORDER BY user_id, friend_id;
+        """;
+    private static final String GET_FRIEND_RECOMMENDATIONS_QUERY = """
+        SELECT c.candidate_id
+        FROM (SELECT ff.friend_id AS candidate_id,
+                     ROW_NUMBER() OVER (PARTITION BY ff.user_id ORDER BY ff.friend_id) AS hop_rank
+              FROM (SELECT friend_id
+                    FROM friends
+                    WHERE user_id = ?
+                    ORDER BY friend_id
+                    LIMIT ?) f
+              JOIN friends ff ON ff.user_id = f.friend_id) c
+        WHERE c.hop_rank <= ?
+          AND c.candidate_id <> ?
+          AND NOT EXISTS(SELECT 1
+                         FROM friends d
+                         WHERE d.user_id = ? AND d.friend_id = c.candidate_id)
+        GROUP BY c.candidate_id
+        ORDER BY COUNT(*) DESC, c.candidate_id
+        LIMIT ?;
         """;
 
+    @PostConstruct
+    public void rebuildGraphIndex() {
+        if (!graphIndex.isEnabled()) {
+            return;
+        }
+        graphRefresher.rebuild(() -> {
+            FriendGraphIndex.Builder builder = graphIndex.builder();
+            forEachRow(GET_ALL_FRIENDSHIPS_QUERY, resultSet -> {
+                builder.add(resultSet.getLong("user_id"), resultSet.getLong("friend_id"));
+            });
+            builder.publish();
+        });
+    }
+
+    private void reloadIndexedFriends(long[] userIds) {
+        AdjacencyUpdate update = graphIndex.update(userIds);
+        forEachRow(GET_FRIENDSHIPS_BY_USER_IDS_QUERY, resultSet -> {
+            update.add(resultSet.getLong("user_id"), resultSet.getLong("friend_id"));
+        }, (Object) toArray(userIds));
+        update.apply();
+    }
+
     @Override
+    @Transactional
     public void addFriend(Long userId, Long friendId) {
         try {
-            validateUserExists(userId);
-            validateUserExists(friendId);
-
-            if (isFriendshipExists(userId, friendId)) {
-                log.debug("User with id={} already has friend with id={}", userId, friendId);
-                return;
-            }
-
-            update(
-                    ADD_FRIEND_QUERY,
+            lockUsers(userId, friendId);
+            execute(
+                    UPSERT_FRIEND_QUERY,
                     userId,
                     friendId,
+                    friendId,
+                    userId,
+                    FriendshipStatus.CONFIRMED.name(),
                     FriendshipStatus.UNCONFIRMED.name()
             );
-
-            if (isFriendshipExists(friendId, userId)) {
-                updateFriendshipStatus(userId, friendId, FriendshipStatus.CONFIRMED);
-                updateFriendshipStatus(friendId, userId, FriendshipStatus.CONFIRMED);
-            }
+            setFriendshipStatus(friendId, userId, FriendshipStatus.CONFIRMED);
+            bumpVersions(userId, friendId);
+            refreshIndexedFriends(userId);
+            invalidateCachedUser(userId);
+        } catch (DataIntegrityViolationException e) {
+            validateUserExists(userId);
+            validateUserExists(friendId);
+            log.error("Error adding friend", e);
+            throw new InternalServerException(
+                    "Failed to add friend: " + e.getMessage());
         } catch (DataAccessException e) {
             log.error("Error adding friend", e);
             throw new InternalServerException(
@@ -88,16 +216,19 @@ public class FriendDbStorage extends BaseDbStorage<Friend> implements FriendStor
     }
 
     @Override
+    @Transactional
     public void removeFriend(Long userId, Long friendId) {
         try {
-            validateUserExists(userId);
-            validateUserExists(friendId);
-
-            jdbc.update(REMOVE_FRIEND_QUERY, userId, friendId);
-
-            if (isFriendshipExists(friendId, userId)) {
-                updateFriendshipStatus(friendId, userId, FriendshipStatus.UNCONFIRMED);
+            lockUsers(userId, friendId);
+            if (execute(REMOVE_FRIEND_QUERY, userId, friendId) == 0) {
+                validateUserExists(userId);
+                validateUserExists(friendId);
+                return;
             }
+            setFriendshipStatus(friendId, userId, FriendshipStatus.UNCONFIRMED);
+            bumpVersions(userId, friendId);
+            refreshIndexedFriends(userId);
+            invalidateCachedUser(userId);
         } catch (DataAccessException e) {
             log.error("Error removing friend", e);
             throw new InternalServerException(
@@ -108,7 +239,10 @@ public class FriendDbStorage extends BaseDbStorage<Friend> implements FriendStor
     @Override
     public List<Long> getFriendsIds(Long userId, boolean onlyConfirmed) {
         validateUserExists(userId);
-        return jdbc.queryForList(
+        if (graphIndex.isEnabled()) {
+            return toList(getIndexedFriends(userId, onlyConfirmed));
+        }
+        return findValues(
                 GET_FRIENDS_QUERY,
                 Long.class,
                 userId,
@@ -121,7 +255,10 @@ public class FriendDbStorage extends BaseDbStorage<Friend> implements FriendStor
         validateUserExists(userId1);
         validateUserExists(userId2);
 
-        return jdbc.queryForList(
+        if (graphIndex.isEnabled()) {
+            return toList(graphIndex.getCommonFriends(userId1, userId2));
+        }
+        return findValues(
                 GET_COMMON_FRIENDS_QUERY,
                 Long.class,
                 userId1,
@@ -129,37 +266,162 @@ public class FriendDbStorage extends BaseDbStorage<Friend> implements FriendStor
         );
     }
 
-    public void validateUserExists(Long userId) {
-        boolean userExists = Optional.ofNullable(
-                jdbc.queryForObject(
-                        CHECK_USER_EXISTS_QUERY,
-                        Boolean.class,
-                        userId
-                )
-        ).orElse(false);
-
-        if (!userExists) {
-            throw new NotFoundException(
-                    FormatUtil.formatNotFoundMessage("User", userId));
+    @Override
+    public List<User> getFriends(Long userId, boolean onlyConfirmed) {
+        validateUserExists(userId);
+        if (graphIndex.isEnabled()) {
+            return getUsersByIds(getIndexedFriends(userId, onlyConfirmed));
         }
+        return findMany(
+                GET_FRIEND_USERS_QUERY,
+                userMapper,
+                userId,
+                !onlyConfirmed
+        );
     }
 
-    public boolean isFriendshipExists(Long userId1, Long userId2) {
-        Integer count = jdbc.queryForObject(
-                CHECK_FRIENDSHIP_EXISTS_QUERY,
-                Integer.class,
+    @Override
+    public List<EntityVersion> getFriendVersions(Long userId, boolean onlyConfirmed) {
+        validateUserExists(userId);
+        return findMany(
+                GET_FRIEND_VERSIONS_QUERY,
+                VERSION_MAPPER,
+                userId,
+                !onlyConfirmed
+        );
+    }
+
+    @Override
+    public List<User> getCommonFriends(Long userId1, Long userId2) {
+        validateUserExists(userId1);
+        validateUserExists(userId2);
+
+        if (graphIndex.isEnabled()) {
+            return getUsersByIds(graphIndex.getCommonFriends(userId1, userId2));
+        }
+        return findMany(
+                GET_COMMON_FRIEND_USERS_QUERY,
+                userMapper,
                 userId1,
                 userId2
         );
-        return count != null && count > 0;
     }
 
-    public void updateFriendshipStatus(Long userId1, Long userId2, FriendshipStatus status) {
-        update(
-                UPDATE_FRIENDSHIP_STATUS_QUERY,
+    @Override
+    public int getFriendsCount(Long userId) {
+        validateUserExists(userId);
+        if (graphIndex.isEnabled()) {
+            return graphIndex.getFriendsCount(userId);
+        }
+        return findValue(GET_FRIENDS_COUNT_QUERY, Integer.class, userId).orElse(0);
+    }
+
+    @Override
+    public List<User> getUsersByIds(long[] userIds) {
+        if (userIds.length == 0) {
+            return List.of();
+        }
+        return findMany(GET_USERS_BY_IDS_QUERY, userMapper, (Object) toArray(userIds));
+    }
+
+    @Override
+    public long[] getFriendRecommendationIds(Long userId, int limit, int maxFanOut) {
+        validateUserExists(userId);
+        if (!graphIndex.isEnabled()) {
+            return findValues(
+                            GET_FRIEND_RECOMMENDATIONS_QUERY,
+                            Long.class,
+                            userId,
+                            maxFanOut,
+                            maxFanOut,
+                            userId,
+                            userId,
+                            limit
+                    ).stream()
+                    .mapToLong(Long::longValue)
+                    .toArray();
+        }
+
+        long[] friends = graphIndex.getFriends(userId);
+        int firstHop = Math.min(friends.length, maxFanOut);
+        // Starts small and grows with the candidates actually seen; firstHop * maxFanOut is only a bound.
+        TopKCounter mutualFriends = new TopKCounter(limit * 4);
+        for (int idx = 0; idx < firstHop; idx++) {
+            long[] friendsOfFriend = graphIndex.getFriends(friends[idx]);
+            int secondHop = Math.min(friendsOfFriend.length, maxFanOut);
+            for (int candidateIdx = 0; candidateIdx < secondHop; candidateIdx++) {
+                long candidateId = friendsOfFriend[candidateIdx];
+                if (candidateId != userId && Arrays.binarySearch(friends, candidateId) < 0) {
+                    mutualFriends.increment(candidateId);
+                }
+            }
+        }
+        return mutualFriends.topK(limit);
+    }
+
+    /**
+     * The status of a friendship depends on whether the reverse row exists, which a concurrent
+     * transaction may be changing without having committed yet. Locking both users first, always in
+     * ascending ID order, serializes writes to the same pair of users without deadlocks.
+     */
+    private void lockUsers(Long userId, Long friendId) {
+        findValues(LOCK_USERS_QUERY, Long.class, Math.min(userId, friendId), Math.max(userId, friendId));
+    }
+
+    /**
+     * Both users change: the first one gains or loses a friend ID, the second one sees the status of
+     * its own friendship change.
+     */
+    private void bumpVersions(Long userId, Long friendId) {
+        execute(BUMP_USER_VERSIONS_QUERY, userId, friendId);
+    }
+
+    private void refreshIndexedFriends(Long userId) {
+        // Only the user's own row set changes; the friend's status flag is not part of the index.
+        if (graphIndex.isEnabled()) {
+            graphRefresher.refreshAfterCommit(userId);
+        }
+    }
+
+    private void invalidateCachedUser(Long userId) {
+        // Invalidate now for reads later in this transaction and again once the change is visible to others.
+        userCache.invalidate(userId);
+        AfterCommit.run(() -> userCache.invalidate(userId));
+    }
+
+    private long[] getIndexedFriends(Long userId, boolean onlyConfirmed) {
+        // Mirrors the status filter of GET_FRIENDS_QUERY.
+        return onlyConfirmed
+                ? graphIndex.getFriends(userId)
+                : graphIndex.getConfirmedFriends(userId);
+    }
+
+    private static Long[] toArray(long[] ids) {
+        return Arrays.stream(ids)
+                .boxed()
+                .toArray(Long[]::new);
+    }
+
+    private static List<Long> toList(long[] ids) {
+        return Arrays.stream(ids)
+                .boxed()
+                .toList();
+    }
+
+    public void validateUserExists(Long userId) {
+        if (!existenceIndex.contains(userId)) {
+            throw new NotFoundException(
+                    FormatUtil.formatNotFoundMessage("User", userId));
+        }
+    }
+
+    private void setFriendshipStatus(Long userId, Long friendId, FriendshipStatus status) {
+        execute(
+                SET_FRIENDSHIP_STATUS_QUERY,
                 status.name(),
-                userId1,
-                userId2
+                userId,
+                friendId,
+                status.name()
         );
     }
 }
@@ -1,5 +1,8 @@
 package ru.yandex.practicum.filmorate.storage.db.user;
 
+import ru.yandex.practicum.filmorate.model.EntityVersion;
+import ru.yandex.practicum.filmorate.model.user.User;
+
 import java.util.List;
 
 public interface FriendStorage {
@@ -11,4 +14,16 @@ public interface FriendStorage {
     List<Long> getFriendsIds(Long userId, boolean onlyConfirmed);
 
     List<Long> getCommonFriendsIds(Long userId1, Long userId2);
+
+    List<User> getFriends(Long userId, boolean onlyConfirmed);
+
+    List<EntityVersion> getFriendVersions(Long userId, boolean onlyConfirmed);
+
+    List<User> getCommonFriends(Long userId1, Long userId2);
+
+    int getFriendsCount(Long userId);
+
+    List<User> getUsersByIds(long[] userIds);
+
+    long[] getFriendRecommendationIds(Long userId, int limit, int maxFanOut);
 }
@@ -1,5 +1,6 @@
 package ru.yandex.practicum.filmorate.storage.db.user;
 
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.dao.DuplicateKeyException;
 import org.springframework.jdbc.core.JdbcTemplate;
@@ -8,10 +9,15 @@ import org.springframework.stereotype.Repository;
 import ru.yandex.practicum.filmorate.exception.DuplicatedDataException;
 import ru.yandex.practicum.filmorate.exception.InternalServerException;
 import ru.yandex.practicum.filmorate.model.user.User;
+import ru.yandex.practicum.filmorate.storage.cache.UserCache;
 import ru.yandex.practicum.filmorate.storage.db.BaseDbStorage;
+import ru.yandex.practicum.filmorate.storage.index.UserExistenceIndex;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Slf4j
 @Repository
@@ -19,10 +25,21 @@ public class UserDbStorage extends BaseDbStorage<User> implements UserStorage {
 
     private static final String FIND_ALL_QUERY = """
             SELECT u.*,
-                   GROUP_CONCAT(f.friend_id SEPARATOR ',') AS friends_ids
+                   (SELECT GROUP_CONCAT(f.friend_id SEPARATOR ',')
+                    FROM friends f
+                    WHERE f.user_id = u.id) AS friends_ids
             FROM users u
-            LEFT JOIN friends f ON u.id = f.user_id
-            GROUP BY u.id;
+            ORDER BY u.id;
+            """;
+    private static final String FIND_PAGE_QUERY = """
+            SELECT u.*,
+                   (SELECT GROUP_CONCAT(f.friend_id SEPARATOR ',')
+                    FROM friends f
+                    WHERE f.user_id = u.id) AS friends_ids
+            FROM users u
+            WHERE u.id > ?
+            ORDER BY u.id
+            LIMIT ?;
             """;
     private static final String INSERT_QUERY = """
             INSERT INTO users(name, email, login, birthday)
@@ -30,7 +47,7 @@ public class UserDbStorage extends BaseDbStorage<User> implements UserStorage {
             """;
     private static final String UPDATE_QUERY = """
             UPDATE users
-            SET name = ?, email = ?, login = ?, birthday = ?
+            SET name = ?, email = ?, login = ?, birthday = ?, version = version + 1
             WHERE id = ?;
             """;
     private static final String FIND_BY_ID_QUERY = """
@@ -40,14 +57,37 @@ public class UserDbStorage extends BaseDbStorage<User> implements UserStorage {
             WHERE u.id = ?
             GROUP BY u.id;
             """;
+    private static final String FIND_VERSION_QUERY = """
+            SELECT version
+            FROM users
+            WHERE id = ?;
+            """;
     private static final String FIND_BY_EMAIL_QUERY = """
             SELECT *
             FROM users
             WHERE email = ?;
             """;
 
-    public UserDbStorage(JdbcTemplate jdbc, RowMapper<User> mapper) {
+    private static final String FIND_ALL_IDS_QUERY = """
+            SELECT id
+            FROM users;
+            """;
+
+    private final UserCache userCache;
+    private final UserExistenceIndex existenceIndex;
+
+    public UserDbStorage(JdbcTemplate jdbc, RowMapper<User> mapper, UserCache userCache,
+                         UserExistenceIndex existenceIndex) {
         super(jdbc, mapper);
+        this.userCache = userCache;
+        this.existenceIndex = existenceIndex;
+    }
+
+    @PostConstruct
+    public void loadExistenceIndex() {
+        forEachRow(FIND_ALL_IDS_QUERY, resultSet -> {
+            existenceIndex.add(resultSet.getLong("id"));
+        });
     }
 
     @Override
@@ -55,6 +95,16 @@ public class UserDbStorage extends BaseDbStorage<User> implements UserStorage {
         return findMany(FIND_ALL_QUERY);
     }
 
+    @Override
+    public List<User> getUsersPage(long afterId, int limit) {
+        return findMany(FIND_PAGE_QUERY, afterId, limit);
+    }
+
+    @Override
+    public Stream<User> streamUsers() {
+        return stream(FIND_ALL_QUERY, mapper);
+    }
+
     @Override
     public User createUser(User user) {
         try {
@@ -65,6 +115,7 @@ public class UserDbStorage extends BaseDbStorage<User> implements UserStorage {
                     user.getLogin(),
                     user.getBirthday());
             user.setId(id);
+            existenceIndex.addAfterCommit(id);
             return user;
         } catch (DuplicateKeyException e) {
             throw new DuplicatedDataException("User with this email or login already exists.");
@@ -84,16 +135,42 @@ public class UserDbStorage extends BaseDbStorage<User> implements UserStorage {
                 user.getBirthday().toString(),
                 user.getId()
         );
+        userCache.invalidate(user.getId());
         return user;
     }
 
     @Override
     public Optional<User> getUserById(Long id) {
-        return findOne(FIND_BY_ID_QUERY, id);
+        if (!existsById(id)) {
+            return Optional.empty();
+        }
+        return userCache.get(id, () -> findOne(FIND_BY_ID_QUERY, id))
+                .map(UserDbStorage::copyOf);
+    }
+
+    @Override
+    public boolean existsById(Long id) {
+        return existenceIndex.contains(id);
+    }
+
+    @Override
+    public Optional<Long> getUserVersion(Long id) {
+        return findValue(FIND_VERSION_QUERY, Long.class, id);
     }
 
     @Override
     public Optional<User> findByEmail(String email) {
         return findOne(FIND_BY_EMAIL_QUERY, email);
     }
+
+    private static User copyOf(User user) {
+        User copy = new User();
+        copy.setId(user.getId());
+        copy.setEmail(user.getEmail());
+        copy.setLogin(user.getLogin());
+        copy.setName(user.getName());
+        copy.setBirthday(user.getBirthday());
+        copy.setFriendsIds(user.getFriendsIds() == null ? null : new ArrayList<>(user.getFriendsIds()));
+        return copy;
+    }
 }
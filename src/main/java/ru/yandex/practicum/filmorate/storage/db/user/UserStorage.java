@@ -3,17 +3,27 @@ package ru.yandex.practicum.filmorate.storage.db.user;
 import ru.yandex.practicum.filmorate.model.user.User;
 
 import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface UserStorage {
 
     Collection<User> getUsers();
 
+    List<User> getUsersPage(long afterId, int limit);
+
+    Stream<User> streamUsers();
+
     User createUser(User user);
 
     User updateUser(User user);
 
     Optional<User> getUserById(Long id);
 
+    boolean existsById(Long id);
+
+    Optional<Long> getUserVersion(Long id);
+
     Optional<User> findByEmail(String email);
 }
\ No newline at end of file
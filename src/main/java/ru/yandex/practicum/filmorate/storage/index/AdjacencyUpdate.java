@@ -0,0 +1,37 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Replaces the sorted `long[]` rows of a few keys in an adjacency map with rows re-read from the
+ * database. Values must arrive in ascending order per key; keys without any rows are removed.
+ */
+public final class AdjacencyUpdate {
+    private final Supplier<Map<Long, long[]>> target;
+    private final long[] keys;
+    private final Map<Long, SortedLongArrays.Buffer> rows = new HashMap<>();
+
+    AdjacencyUpdate(Supplier<Map<Long, long[]>> target, long[] keys) {
+        this.target = target;
+        this.keys = keys;
+    }
+
+    public void add(long key, long value) {
+        rows.computeIfAbsent(key, id -> new SortedLongArrays.Buffer()).add(value);
+    }
+
+    public void apply() {
+        // The map is looked up only now, so an update racing with a rebuild lands in the published map.
+        Map<Long, long[]> adjacency = target.get();
+        for (long key : keys) {
+            SortedLongArrays.Buffer values = rows.get(key);
+            if (values == null) {
+                adjacency.remove(key);
+            } else {
+                adjacency.put(key, values.toArray());
+            }
+        }
+    }
+}
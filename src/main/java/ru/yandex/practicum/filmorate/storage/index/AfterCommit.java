@@ -0,0 +1,28 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Defers in-memory index updates until the surrounding transaction commits, so that a rolled back
+ * write never becomes visible through an index.
+ */
+public final class AfterCommit {
+
+    private AfterCommit() {
+        throw new UnsupportedOperationException("Utility class should not be instantiated");
+    }
+
+    public static void run(Runnable update) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    update.run();
+                }
+            });
+        } else {
+            update.run();
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+/**
+ * Immutable sorted set of non-negative `long` values split into blocks of consecutive value ranges.
+ *
+ * Inserting or removing a value copies only the block that holds it and the block directory, so the
+ * postings of a term shared by a million films cost kilobytes to update instead of a copy of every ID.
+ */
+final class BlockedLongSet {
+    static final BlockedLongSet EMPTY = new BlockedLongSet(new long[0], new long[0][]);
+    private static final int BLOCK_SHIFT = 10;
+
+    private final long[] blockIds;
+    private final long[][] blocks;
+
+    private BlockedLongSet(long[] blockIds, long[][] blocks) {
+        this.blockIds = blockIds;
+        this.blocks = blocks;
+    }
+
+    static BlockedLongSet of(long[] sortedValues) {
+        SortedLongArrays.Buffer ids = new SortedLongArrays.Buffer();
+        long[][] split = new long[sortedValues.length][];
+        int size = 0;
+        for (int from = 0; from < sortedValues.length; ) {
+            long blockId = sortedValues[from] >> BLOCK_SHIFT;
+            int to = from + 1;
+            while (to < sortedValues.length && sortedValues[to] >> BLOCK_SHIFT == blockId) {
+                to++;
+            }
+            ids.add(blockId);
+            split[size++] = Arrays.copyOfRange(sortedValues, from, to);
+            from = to;
+        }
+        return new BlockedLongSet(ids.toArray(), Arrays.copyOf(split, size));
+    }
+
+    /**
+     * Returns a set with `value` inserted, or this set if it is already present. `null` stands for an
+     * empty set, as in `Map.compute`.
+     */
+    static BlockedLongSet insert(BlockedLongSet set, long value) {
+        return (set == null ? EMPTY : set).insert(value);
+    }
+
+    private BlockedLongSet insert(long value) {
+        long blockId = value >> BLOCK_SHIFT;
+        int idx = Arrays.binarySearch(blockIds, blockId);
+        if (idx >= 0) {
+            long[] block = SortedLongArrays.insert(blocks[idx], value);
+            if (block == blocks[idx]) {
+                return this;
+            }
+            long[][] updated = blocks.clone();
+            updated[idx] = block;
+            return new BlockedLongSet(blockIds, updated);
+        }
+
+        int insertAt = -idx - 1;
+        long[] updatedIds = new long[blockIds.length + 1];
+        long[][] updated = new long[blocks.length + 1][];
+        System.arraycopy(blockIds, 0, updatedIds, 0, insertAt);
+        System.arraycopy(blocks, 0, updated, 0, insertAt);
+        updatedIds[insertAt] = blockId;
+        updated[insertAt] = new long[]{value};
+        System.arraycopy(blockIds, insertAt, updatedIds, insertAt + 1, blockIds.length - insertAt);
+        System.arraycopy(blocks, insertAt, updated, insertAt + 1, blocks.length - insertAt);
+        return new BlockedLongSet(updatedIds, updated);
+    }
+
+    /**
+     * Returns a set without `value`, or `null` if nothing is left, so that it can be used as a
+     * `Map.computeIfPresent` remapping result.
+     */
+    BlockedLongSet remove(long value) {
+        int idx = Arrays.binarySearch(blockIds, value >> BLOCK_SHIFT);
+        if (idx < 0) {
+            return this;
+        }
+        long[] block = SortedLongArrays.remove(blocks[idx], value);
+        if (block == blocks[idx]) {
+            return this;
+        }
+        if (block != null) {
+            long[][] updated = blocks.clone();
+            updated[idx] = block;
+            return new BlockedLongSet(blockIds, updated);
+        }
+        if (blocks.length == 1) {
+            return null;
+        }
+
+        long[] updatedIds = new long[blockIds.length - 1];
+        long[][] updated = new long[blocks.length - 1][];
+        System.arraycopy(blockIds, 0, updatedIds, 0, idx);
+        System.arraycopy(blocks, 0, updated, 0, idx);
+        System.arraycopy(blockIds, idx + 1, updatedIds, idx, blockIds.length - idx - 1);
+        System.arraycopy(blocks, idx + 1, updated, idx, blocks.length - idx - 1);
+        return new BlockedLongSet(updatedIds, updated);
+    }
+
+    void forEach(LongConsumer action) {
+        for (long[] block : blocks) {
+            for (long value : block) {
+                action.accept(value);
+            }
+        }
+    }
+}
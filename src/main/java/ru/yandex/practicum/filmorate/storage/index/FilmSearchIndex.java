@@ -0,0 +1,173 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongToIntFunction;
+
+/**
+ * In-process inverted index over film names and descriptions.
+ *
+ * Text is split into runs of letters and digits and lowercased per code point, which handles Cyrillic
+ * the same way as Latin; `ё` is folded into `е`. Every term maps to a sorted set of film IDs,
+ * separately for names and descriptions. A match in the name weighs more than a match in the
+ * description. Posting sets are immutable and split into blocks of IDs: a write copies only the
+ * blocks it touches and replaces the set atomically, so searches need no locking. The terms of every
+ * indexed film are remembered so that an update can drop the postings of the old text. The index is
+ * rebuilt from the database at startup, and `FilmDbStorage` re-reads a film after each committed
+ * create or update; writes of one film are serialized by its `IndexRefresher`.
+ */
+@Slf4j
+@Component
+public class FilmSearchIndex {
+    private static final int NAME_WEIGHT = 3;
+    private static final int DESCRIPTION_WEIGHT = 1;
+
+    private volatile Map<String, BlockedLongSet> namePostings = new ConcurrentHashMap<>();
+    private volatile Map<String, BlockedLongSet> descriptionPostings = new ConcurrentHashMap<>();
+    private volatile Map<Long, Document> documents = new ConcurrentHashMap<>();
+
+    public Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Returns up to `limit` IDs of films that contain any of the query terms. Films are ordered by the
+     * weighted number of matched terms, then by `popularity` descending, then by ID.
+     */
+    public long[] search(String query, int limit, LongToIntFunction popularity) {
+        String[] terms = tokenize(query);
+        if (terms.length == 0) {
+            return SortedLongArrays.EMPTY;
+        }
+
+        Map<String, BlockedLongSet> names = namePostings;
+        Map<String, BlockedLongSet> descriptions = descriptionPostings;
+        TopKCounter scores = new TopKCounter(limit * 4);
+        for (String term : terms) {
+            names.getOrDefault(term, BlockedLongSet.EMPTY).forEach(filmId -> scores.add(filmId, NAME_WEIGHT));
+            descriptions.getOrDefault(term, BlockedLongSet.EMPTY)
+                    .forEach(filmId -> scores.add(filmId, DESCRIPTION_WEIGHT));
+        }
+        return scores.topK(limit, popularity);
+    }
+
+    /**
+     * Replaces the indexed text of a film. Callers must not index the same film concurrently.
+     */
+    public void putFilm(long filmId, String name, String description) {
+        Map<String, BlockedLongSet> names = namePostings;
+        Map<String, BlockedLongSet> descriptions = descriptionPostings;
+        Map<Long, Document> indexed = documents;
+
+        Document previous = indexed.get(filmId);
+        if (previous != null) {
+            for (String term : previous.nameTerms()) {
+                names.computeIfPresent(term, (key, films) -> films.remove(filmId));
+            }
+            for (String term : previous.descriptionTerms()) {
+                descriptions.computeIfPresent(term, (key, films) -> films.remove(filmId));
+            }
+        }
+
+        String[] nameTerms = tokenize(name);
+        String[] descriptionTerms = tokenize(description);
+        for (String term : nameTerms) {
+            names.compute(term, (key, films) -> BlockedLongSet.insert(films, filmId));
+        }
+        for (String term : descriptionTerms) {
+            descriptions.compute(term, (key, films) -> BlockedLongSet.insert(films, filmId));
+        }
+        indexed.put(filmId, new Document(nameTerms, descriptionTerms));
+    }
+
+    /**
+     * Splits text into distinct lowercased terms in order of first appearance.
+     */
+    public static String[] tokenize(String text) {
+        if (text == null || text.isEmpty()) {
+            return new String[0];
+        }
+
+        Set<String> terms = new LinkedHashSet<>();
+        StringBuilder term = new StringBuilder();
+        for (int idx = 0; idx < text.length(); ) {
+            int codePoint = text.codePointAt(idx);
+            idx += Character.charCount(codePoint);
+            if (Character.isLetterOrDigit(codePoint)) {
+                term.appendCodePoint(normalize(codePoint));
+            } else if (!term.isEmpty()) {
+                terms.add(term.toString());
+                term.setLength(0);
+            }
+        }
+        if (!term.isEmpty()) {
+            terms.add(term.toString());
+        }
+        return terms.toArray(String[]::new);
+    }
+
+    private static int normalize(int codePoint) {
+        int lowerCase = Character.toLowerCase(codePoint);
+        return lowerCase == 'ё' ? 'е' : lowerCase;
+    }
+
+    private record Document(String[] nameTerms, String[] descriptionTerms) {
+    }
+
+    /**
+     * Collects films ordered by ID and publishes them as a new index.
+     */
+    public final class Builder {
+        private final Map<String, SortedLongArrays.Buffer> names = new HashMap<>();
+        private final Map<String, SortedLongArrays.Buffer> descriptions = new HashMap<>();
+        private final Map<String, String> canonicalTerms = new HashMap<>();
+        private final Map<Long, Document> indexed = new ConcurrentHashMap<>();
+
+        private Builder() {
+        }
+
+        public void add(long filmId, String name, String description) {
+            String[] nameTerms = intern(tokenize(name), names, filmId);
+            String[] descriptionTerms = intern(tokenize(description), descriptions, filmId);
+            indexed.put(filmId, new Document(nameTerms, descriptionTerms));
+        }
+
+        public void publish() {
+            Map<String, BlockedLongSet> publishedNames = toPostings(names);
+            Map<String, BlockedLongSet> publishedDescriptions = toPostings(descriptions);
+            namePostings = publishedNames;
+            descriptionPostings = publishedDescriptions;
+            documents = indexed;
+            log.info("Film search index built: films={}, nameTerms={}, descriptionTerms={}",
+                    indexed.size(), publishedNames.size(), publishedDescriptions.size());
+        }
+
+        /**
+         * Appends the film to the postings of each term and replaces every term with its first seen
+         * instance, so that the remembered documents share term strings.
+         */
+        private String[] intern(String[] terms, Map<String, SortedLongArrays.Buffer> postings, long filmId) {
+            for (int idx = 0; idx < terms.length; idx++) {
+                String canonical = canonicalTerms.putIfAbsent(terms[idx], terms[idx]);
+                if (canonical != null) {
+                    terms[idx] = canonical;
+                }
+                // Films arrive ordered by ID, so every buffer stays sorted.
+                postings.computeIfAbsent(terms[idx], term -> new SortedLongArrays.Buffer()).add(filmId);
+            }
+            return terms;
+        }
+
+        private Map<String, BlockedLongSet> toPostings(Map<String, SortedLongArrays.Buffer> buffers) {
+            Map<String, BlockedLongSet> postings = new ConcurrentHashMap<>(buffers.size());
+            buffers.forEach((term, films) -> postings.put(term, BlockedLongSet.of(films.toArray())));
+            return postings;
+        }
+    }
+}
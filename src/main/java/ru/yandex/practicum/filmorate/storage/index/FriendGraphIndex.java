@@ -0,0 +1,118 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Optional in-process adjacency index of the `friends` table.
+ *
+ * For every user it keeps a sorted `long[]` of the IDs the user has added as friends. Arrays are never
+ * modified after they are published: every write replaces the user's array atomically, so readers need
+ * no locking. Common friends are computed with a linear merge of two arrays, and friend counts are the
+ * array length. The index is rebuilt from the database at startup, and `FriendDbStorage` re-reads the
+ * friends of a user after each committed write.
+ */
+@Slf4j
+@Component
+public class FriendGraphIndex {
+    private final boolean enabled;
+    private volatile Map<Long, long[]> friendsByUserId = new ConcurrentHashMap<>();
+
+    public FriendGraphIndex(@Value("${filmorate.friends.graph-index.enabled:false}") boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public Builder builder() {
+        return new Builder();
+    }
+
+    public long[] getFriends(long userId) {
+        return friendsByUserId.getOrDefault(userId, SortedLongArrays.EMPTY);
+    }
+
+    public int getFriendsCount(long userId) {
+        return getFriends(userId).length;
+    }
+
+    public boolean hasFriend(long userId, long friendId) {
+        return SortedLongArrays.contains(getFriends(userId), friendId);
+    }
+
+    public long[] getConfirmedFriends(long userId) {
+        return Arrays.stream(getFriends(userId))
+                .filter(friendId -> hasFriend(friendId, userId))
+                .toArray();
+    }
+
+    public long[] getCommonFriends(long userId1, long userId2) {
+        long[] friends1 = getFriends(userId1);
+        long[] friends2 = getFriends(userId2);
+        long[] common = new long[Math.min(friends1.length, friends2.length)];
+        int size = 0;
+
+        for (int idx1 = 0, idx2 = 0; idx1 < friends1.length && idx2 < friends2.length; ) {
+            if (friends1[idx1] < friends2[idx2]) {
+                idx1++;
+            } else if (friends1[idx1] > friends2[idx2]) {
+                idx2++;
+            } else {
+                common[size++] = friends1[idx1];
+                idx1++;
+                idx2++;
+            }
+        }
+
+        return Arrays.copyOf(common, size);
+    }
+
+    /**
+     * Returns an update that replaces the friends of `userIds` with rows ordered by `user_id, friend_id`.
+     */
+    public AdjacencyUpdate update(long[] userIds) {
+        return new AdjacencyUpdate(() -> friendsByUserId, userIds);
+    }
+
+    /**
+     * Collects friendship rows ordered by `user_id, friend_id` and publishes them as a new index.
+     */
+    public final class Builder {
+        private final Map<Long, long[]> adjacency = new ConcurrentHashMap<>();
+        private final SortedLongArrays.Buffer friends = new SortedLongArrays.Buffer();
+        private long currentUserId = -1;
+        private long edges;
+
+        private Builder() {
+        }
+
+        public void add(long userId, long friendId) {
+            if (userId != currentUserId) {
+                flushCurrentUser();
+                currentUserId = userId;
+            }
+            friends.add(friendId);
+            edges++;
+        }
+
+        public void publish() {
+            flushCurrentUser();
+            friendsByUserId = adjacency;
+            log.info("Friend graph index built: users={}, friendships={}", adjacency.size(), edges);
+        }
+
+        private void flushCurrentUser() {
+            if (!friends.isEmpty()) {
+                adjacency.put(currentUserId, friends.toArray());
+                friends.clear();
+            }
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Brings in-memory index entries up to date by re-reading them from the database after a commit.
+ *
+ * After-commit callbacks of concurrent transactions run in any order, so replaying the arguments of
+ * each write could leave an entry in the state of an older commit. Instead `reload` re-reads the
+ * current rows of the changed keys while their locks are held: whichever refresh of a key runs last
+ * reads a state at least as new as every commit before it. Keys refreshed while the index is being
+ * rebuilt are refreshed again once the rebuild is published, because the rebuild may have read their
+ * rows before the commit.
+ */
+public final class IndexRefresher {
+    private static final int LOCK_STRIPES = 64;
+
+    private final Consumer<long[]> reload;
+    private final ReentrantLock[] locks = new ReentrantLock[LOCK_STRIPES];
+    private Set<Long> refreshedDuringRebuild;
+
+    public IndexRefresher(Consumer<long[]> reload) {
+        this.reload = reload;
+        for (int idx = 0; idx < LOCK_STRIPES; idx++) {
+            locks[idx] = new ReentrantLock();
+        }
+    }
+
+    public void refreshAfterCommit(long... keys) {
+        if (keys.length > 0) {
+            AfterCommit.run(() -> refresh(keys));
+        }
+    }
+
+    public void refresh(long... keys) {
+        if (keys.length == 0) {
+            return;
+        }
+        rememberIfRebuilding(keys);
+        // Stripes are locked in ascending order, so refreshes of overlapping key sets cannot deadlock.
+        int[] stripes = Arrays.stream(keys)
+                .mapToInt(IndexRefresher::stripe)
+                .distinct()
+                .sorted()
+                .toArray();
+        for (int stripe : stripes) {
+            locks[stripe].lock();
+        }
+        try {
+            reload.accept(keys);
+        } finally {
+            for (int idx = stripes.length - 1; idx >= 0; idx--) {
+                locks[stripes[idx]].unlock();
+            }
+        }
+    }
+
+    /**
+     * Runs a full rebuild that ends by publishing the new index, then refreshes the keys whose
+     * refreshes overlapped with it.
+     */
+    public void rebuild(Runnable rebuild) {
+        synchronized (this) {
+            refreshedDuringRebuild = new HashSet<>();
+        }
+        long[] overlapping;
+        try {
+            rebuild.run();
+        } finally {
+            synchronized (this) {
+                overlapping = refreshedDuringRebuild.stream()
+                        .mapToLong(Long::longValue)
+                        .toArray();
+                refreshedDuringRebuild = null;
+            }
+        }
+        refresh(overlapping);
+    }
+
+    private synchronized void rememberIfRebuilding(long[] keys) {
+        if (refreshedDuringRebuild != null) {
+            Arrays.stream(keys).forEach(refreshedDuringRebuild::add);
+        }
+    }
+
+    private static int stripe(long key) {
+        return (int) ((key ^ (key >>> 32)) & (LOCK_STRIPES - 1));
+    }
+}
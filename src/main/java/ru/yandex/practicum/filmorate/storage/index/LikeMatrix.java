@@ -0,0 +1,129 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-process copy of the `likes` table used for collaborative filtering.
+ *
+ * The matrix is stored twice as sorted `long[]` rows: film IDs liked by each user and user IDs who
+ * liked each film. Rows are replaced atomically on every change, so readers need no locking. The
+ * matrix is rebuilt from the database at startup, and `FilmDbStorage` re-reads the rows of the user
+ * and the film after each committed like or unlike.
+ */
+@Slf4j
+@Component
+public class LikeMatrix {
+    private volatile Map<Long, long[]> filmsByUserId = new ConcurrentHashMap<>();
+    private volatile Map<Long, long[]> usersByFilmId = new ConcurrentHashMap<>();
+
+    public Builder builder() {
+        return new Builder();
+    }
+
+    public long[] getLikedFilms(long userId) {
+        return filmsByUserId.getOrDefault(userId, SortedLongArrays.EMPTY);
+    }
+
+    public long[] getLikedUsers(long filmId) {
+        return usersByFilmId.getOrDefault(filmId, SortedLongArrays.EMPTY);
+    }
+
+    /**
+     * Returns an update that replaces the films liked by `userIds` with rows ordered by `user_id, film_id`.
+     */
+    public AdjacencyUpdate updateLikedFilms(long[] userIds) {
+        return new AdjacencyUpdate(() -> filmsByUserId, userIds);
+    }
+
+    /**
+     * Returns an update that replaces the users who liked `filmIds` with rows ordered by `film_id, user_id`.
+     */
+    public AdjacencyUpdate updateLikedUsers(long[] filmIds) {
+        return new AdjacencyUpdate(() -> usersByFilmId, filmIds);
+    }
+
+    /**
+     * Recommends films for a user in two steps.
+     *
+     * First, users who liked the same films are ranked by the size of the overlap and the best
+     * `neighbours` of them are kept; at most `maxFanOut` likers are read per film. Then every film
+     * liked by a neighbour but not by the user scores the neighbour's overlap, and the `limit` best
+     * scored film IDs are returned.
+     */
+    public long[] recommendFilms(long userId, int limit, int neighbours, int maxFanOut) {
+        long[] likedFilms = getLikedFilms(userId);
+        if (likedFilms.length == 0) {
+            return SortedLongArrays.EMPTY;
+        }
+
+        TopKCounter overlaps = new TopKCounter(neighbours * 4);
+        for (long filmId : likedFilms) {
+            long[] likedUsers = getLikedUsers(filmId);
+            int fanOut = Math.min(likedUsers.length, maxFanOut);
+            for (int idx = 0; idx < fanOut; idx++) {
+                if (likedUsers[idx] != userId) {
+                    overlaps.increment(likedUsers[idx]);
+                }
+            }
+        }
+
+        long[] similarUsers = overlaps.topK(neighbours);
+        TopKCounter scores = new TopKCounter(limit * 4);
+        for (long similarUserId : similarUsers) {
+            int weight = overlaps.get(similarUserId);
+            for (long filmId : getLikedFilms(similarUserId)) {
+                if (!SortedLongArrays.contains(likedFilms, filmId)) {
+                    scores.add(filmId, weight);
+                }
+            }
+        }
+        return scores.topK(limit);
+    }
+
+    /**
+     * Collects like rows ordered by `user_id, film_id` and publishes them as a new matrix.
+     */
+    public final class Builder {
+        private final Map<Long, long[]> films = new ConcurrentHashMap<>();
+        private final Map<Long, SortedLongArrays.Buffer> users = new HashMap<>();
+        private final SortedLongArrays.Buffer currentFilms = new SortedLongArrays.Buffer();
+        private long currentUserId = -1;
+        private long likes;
+
+        private Builder() {
+        }
+
+        public void add(long userId, long filmId) {
+            if (userId != currentUserId) {
+                flushCurrentUser();
+                currentUserId = userId;
+            }
+            currentFilms.add(filmId);
+            // Rows arrive ordered by user ID, so every per-film buffer stays sorted.
+            users.computeIfAbsent(filmId, id -> new SortedLongArrays.Buffer()).add(userId);
+            likes++;
+        }
+
+        public void publish() {
+            flushCurrentUser();
+            Map<Long, long[]> likedUsers = new ConcurrentHashMap<>(users.size());
+            users.forEach((filmId, buffer) -> likedUsers.put(filmId, buffer.toArray()));
+
+            filmsByUserId = films;
+            usersByFilmId = likedUsers;
+            log.info("Like matrix built: users={}, films={}, likes={}", films.size(), likedUsers.size(), likes);
+        }
+
+        private void flushCurrentUser() {
+            if (!currentFilms.isEmpty()) {
+                films.put(currentUserId, currentFilms.toArray());
+                currentFilms.clear();
+            }
+        }
+    }
+}
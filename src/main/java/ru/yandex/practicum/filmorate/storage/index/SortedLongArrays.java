@@ -0,0 +1,84 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import java.util.Arrays;
+
+/**
+ * Copy-on-write operations on sorted `long[]` sets shared by the in-memory indexes.
+ */
+final class SortedLongArrays {
+    static final long[] EMPTY = new long[0];
+
+    private SortedLongArrays() {
+        throw new UnsupportedOperationException("Utility class should not be instantiated");
+    }
+
+    static boolean contains(long[] values, long value) {
+        return Arrays.binarySearch(values, value) >= 0;
+    }
+
+    /**
+     * Returns a copy of `values` with `value` inserted, or `values` itself if it is already present.
+     */
+    static long[] insert(long[] values, long value) {
+        if (values == null) {
+            return new long[]{value};
+        }
+        int idx = Arrays.binarySearch(values, value);
+        if (idx >= 0) {
+            return values;
+        }
+
+        int insertAt = -idx - 1;
+        long[] updated = new long[values.length + 1];
+        System.arraycopy(values, 0, updated, 0, insertAt);
+        updated[insertAt] = value;
+        System.arraycopy(values, insertAt, updated, insertAt + 1, values.length - insertAt);
+        return updated;
+    }
+
+    /**
+     * Returns a copy of `values` without `value`, or `null` if nothing is left, so that it can be used
+     * as a `Map.computeIfPresent` remapping result.
+     */
+    static long[] remove(long[] values, long value) {
+        int idx = Arrays.binarySearch(values, value);
+        if (idx < 0) {
+            return values;
+        }
+        if (values.length == 1) {
+            return null;
+        }
+
+        long[] updated = new long[values.length - 1];
+        System.arraycopy(values, 0, updated, 0, idx);
+        System.arraycopy(values, idx + 1, updated, idx, values.length - idx - 1);
+        return updated;
+    }
+
+    /**
+     * Appends values in arrival order while an index is being built.
+     */
+    static final class Buffer {
+        private long[] values = new long[4];
+        private int size;
+
+        void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        long[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+
+        void clear() {
+            size = 0;
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import java.util.Arrays;
+import java.util.function.LongToIntFunction;
+
+/**
+ * Counts occurrences of `long` keys without boxing and selects the `k` most frequent ones.
+ *
+ * Keys live in an open-addressing table with linear probing, so incrementing a key allocates nothing
+ * until the table grows. Selection keeps a bounded min-heap of size `k` over parallel primitive arrays.
+ * Ties are broken by an optional secondary rank and then by the smaller key. Instances are not
+ * thread-safe and are meant to be used once per request.
+ */
+public final class TopKCounter {
+    private static final long EMPTY = Long.MIN_VALUE;
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] keys;
+    private int[] counts;
+    private int size;
+
+    public TopKCounter(int expectedKeys) {
+        int capacity = Integer.highestOneBit(Math.max(MIN_CAPACITY, expectedKeys * 2 - 1)) << 1;
+        keys = new long[capacity];
+        counts = new int[capacity];
+        Arrays.fill(keys, EMPTY);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void increment(long key) {
+        add(key, 1);
+    }
+
+    public void add(long key, int delta) {
+        int mask = keys.length - 1;
+        int idx = mix(key) & mask;
+        while (keys[idx] != EMPTY) {
+            if (keys[idx] == key) {
+                counts[idx] += delta;
+                return;
+            }
+            idx = (idx + 1) & mask;
+        }
+
+        keys[idx] = key;
+        counts[idx] = delta;
+        if (++size * 2 > keys.length) {
+            grow();
+        }
+    }
+
+    public int get(long key) {
+        int mask = keys.length - 1;
+        int idx = mix(key) & mask;
+        while (keys[idx] != EMPTY) {
+            if (keys[idx] == key) {
+                return counts[idx];
+            }
+            idx = (idx + 1) & mask;
+        }
+        return 0;
+    }
+
+    /**
+     * Returns up to `k` keys with the highest counts, ordered by count descending and then by key.
+     */
+    public long[] topK(int k) {
+        return topK(k, key -> 0);
+    }
+
+    /**
+     * Returns up to `k` keys with the highest counts. Equal counts are ordered by `tieBreaker`
+     * descending and then by key; the tie breaker is evaluated once per counted key.
+     */
+    public long[] topK(int k, LongToIntFunction tieBreaker) {
+        int limit = Math.min(k, size);
+        long[] heapKeys = new long[limit];
+        int[] heapCounts = new int[limit];
+        int[] heapTies = new int[limit];
+        int heapSize = 0;
+
+        for (int idx = 0; idx < keys.length && limit > 0; idx++) {
+            if (keys[idx] == EMPTY) {
+                continue;
+            }
+            int tie = tieBreaker.applyAsInt(keys[idx]);
+            if (heapSize < limit) {
+                heapKeys[heapSize] = keys[idx];
+                heapCounts[heapSize] = counts[idx];
+                heapTies[heapSize] = tie;
+                siftUp(heapKeys, heapCounts, heapTies, heapSize++);
+            } else if (ranksHigher(heapCounts, heapTies, heapKeys, counts[idx], tie, keys[idx], 0)) {
+                heapKeys[0] = keys[idx];
+                heapCounts[0] = counts[idx];
+                heapTies[0] = tie;
+                siftDown(heapKeys, heapCounts, heapTies, heapSize);
+            }
+        }
+
+        long[] result = new long[heapSize];
+        for (int pos = heapSize - 1; pos >= 0; pos--) {
+            result[pos] = heapKeys[0];
+            move(heapKeys, heapCounts, heapTies, pos, 0);
+            siftDown(heapKeys, heapCounts, heapTies, pos);
+        }
+        return result;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        int[] oldCounts = counts;
+        keys = new long[oldKeys.length * 2];
+        counts = new int[oldCounts.length * 2];
+        Arrays.fill(keys, EMPTY);
+        size = 0;
+
+        for (int idx = 0; idx < oldKeys.length; idx++) {
+            if (oldKeys[idx] != EMPTY) {
+                add(oldKeys[idx], oldCounts[idx]);
+            }
+        }
+    }
+
+    private static int mix(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    private static boolean ranksHigher(int[] heapCounts, int[] heapTies, long[] heapKeys,
+                                       int count, int tie, long key, int pos) {
+        if (count != heapCounts[pos]) {
+            return count > heapCounts[pos];
+        }
+        if (tie != heapTies[pos]) {
+            return tie > heapTies[pos];
+        }
+        return key < heapKeys[pos];
+    }
+
+    private static boolean ranksHigher(long[] heapKeys, int[] heapCounts, int[] heapTies, int pos1, int pos2) {
+        return ranksHigher(heapCounts, heapTies, heapKeys, heapCounts[pos1], heapTies[pos1], heapKeys[pos1], pos2);
+    }
+
+    private static void siftUp(long[] heapKeys, int[] heapCounts, int[] heapTies, int pos) {
+        while (pos > 0) {
+            int parent = (pos - 1) >>> 1;
+            if (!ranksHigher(heapKeys, heapCounts, heapTies, parent, pos)) {
+                return;
+            }
+            swap(heapKeys, heapCounts, heapTies, parent, pos);
+            pos = parent;
+        }
+    }
+
+    private static void siftDown(long[] heapKeys, int[] heapCounts, int[] heapTies, int heapSize) {
+        int pos = 0;
+        while (true) {
+            int lowest = pos;
+            int left = pos * 2 + 1;
+            int right = left + 1;
+            if (left < heapSize && ranksHigher(heapKeys, heapCounts, heapTies, lowest, left)) {
+                lowest = left;
+            }
+            if (right < heapSize && ranksHigher(heapKeys, heapCounts, heapTies, lowest, right)) {
+                lowest = right;
+            }
+            if (lowest == pos) {
+                return;
+            }
+            swap(heapKeys, heapCounts, heapTies, lowest, pos);
+            pos = lowest;
+        }
+    }
+
+    private static void move(long[] heapKeys, int[] heapCounts, int[] heapTies, int from, int to) {
+        heapKeys[to] = heapKeys[from];
+        heapCounts[to] = heapCounts[from];
+        heapTies[to] = heapTies[from];
+    }
+
+    private static void swap(long[] heapKeys, int[] heapCounts, int[] heapTies, int pos1, int pos2) {
+        long key = heapKeys[pos1];
+        int count = heapCounts[pos1];
+        int tie = heapTies[pos1];
+        move(heapKeys, heapCounts, heapTies, pos2, pos1);
+        heapKeys[pos2] = key;
+        heapCounts[pos2] = count;
+        heapTies[pos2] = tie;
+    }
+}
@@ -0,0 +1,76 @@
+package ru.yandex.practicum.filmorate.storage.index;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bitset of existing user IDs, so that existence checks never reach the database.
+ *
+ * Users are never deleted, so bits are only ever set. Readers use the current word array without
+ * locking; writers are serialized and grow the array by copying. The set is loaded at startup and
+ * extended by `UserDbStorage` once the transaction inserting a user commits, so a rolled back insert
+ * never makes its id look taken. Until then the id is visible only to the inserting transaction.
+ */
+@Component
+public class UserExistenceIndex {
+    private static final int WORD_BITS = 64;
+
+    private volatile AtomicLongArray words = new AtomicLongArray(1);
+
+    public boolean contains(long userId) {
+        if (userId < 0) {
+            return false;
+        }
+        AtomicLongArray current = words;
+        long wordIdx = userId / WORD_BITS;
+        if (wordIdx < current.length() && (current.get((int) wordIdx) & (1L << (userId % WORD_BITS))) != 0) {
+            return true;
+        }
+        return TransactionSynchronizationManager.getResource(this) instanceof Set<?> uncommitted
+                && uncommitted.contains(userId);
+    }
+
+    public void addAfterCommit(long userId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            add(userId);
+            return;
+        }
+        uncommittedIds().add(userId);
+        AfterCommit.run(() -> add(userId));
+    }
+
+    public synchronized void add(long userId) {
+        int wordIdx = Math.toIntExact(userId / WORD_BITS);
+        AtomicLongArray current = words;
+        if (wordIdx >= current.length()) {
+            AtomicLongArray grown = new AtomicLongArray(Math.max(wordIdx + 1, current.length() * 2));
+            for (int idx = 0; idx < current.length(); idx++) {
+                grown.set(idx, current.get(idx));
+            }
+            current = grown;
+        }
+        current.getAndAccumulate(wordIdx, 1L << (userId % WORD_BITS), (word, bit) -> word | bit);
+        words = current;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Set<Long> uncommittedIds() {
+        Set<Long> ids = (Set<Long>) TransactionSynchronizationManager.getResource(this);
+        if (ids == null) {
+            ids = new HashSet<>();
+            TransactionSynchronizationManager.bindResource(this, ids);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(UserExistenceIndex.this);
+                }
+            });
+        }
+        return ids;
+    }
+}
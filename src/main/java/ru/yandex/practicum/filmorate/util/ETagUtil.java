@@ -0,0 +1,43 @@
+package ru.yandex.practicum.filmorate.util;
+
+import ru.yandex.practicum.filmorate.model.EntityVersion;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+
+public class ETagUtil {
+    private static final String DIGEST_ALGORITHM = "SHA-256";
+    private static final int DIGEST_BYTES = 16;
+
+    private ETagUtil() {
+        throw new UnsupportedOperationException("Utility class should not be instantiated");
+    }
+
+    public static String forEntity(String entity, Long id, Long version) {
+        return "\"" + entity + "-" + id + "-" + version + "\"";
+    }
+
+    public static String forList(String entity, List<EntityVersion> versions) {
+        MessageDigest digest = newDigest();
+        ByteBuffer entry = ByteBuffer.allocate(2 * Long.BYTES);
+        for (EntityVersion version : versions) {
+            entry.clear();
+            entry.putLong(version.getId()).putLong(version.getVersion());
+            digest.update(entry.array());
+        }
+        byte[] hash = Arrays.copyOf(digest.digest(), DIGEST_BYTES);
+        return "\"" + entity + "-" + versions.size() + "-" + HexFormat.of().formatHex(hash) + "\"";
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(DIGEST_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(DIGEST_ALGORITHM + " is not available", e);
+        }
+    }
+}
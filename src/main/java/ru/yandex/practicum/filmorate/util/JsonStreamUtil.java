@@ -0,0 +1,31 @@
+package ru.yandex.practicum.filmorate.util;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+public class JsonStreamUtil {
+    private JsonStreamUtil() {
+        throw new UnsupportedOperationException("Utility class should not be instantiated");
+    }
+
+    /**
+     * Writes `items` as a JSON array and closes the stream afterwards, even when the client goes away
+     * mid-response, so a database cursor behind it never outlives the write.
+     */
+    public static void writeArray(ObjectMapper objectMapper, OutputStream out, Stream<?> items) throws IOException {
+        try (items; JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.writeStartArray();
+            Iterator<?> iterator = items.iterator();
+            while (iterator.hasNext()) {
+                generator.writeObject(iterator.next());
+            }
+            generator.writeEndArray();
+        }
+    }
+}
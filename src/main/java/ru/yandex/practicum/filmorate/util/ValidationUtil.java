@@ -8,6 +8,9 @@ import java.util.Set;
 
 public class ValidationUtil {
 
+    public static final int MAX_PAGE_SIZE = 1000;
+    private static final String PAGE_SIZE_TEMPLATE = "Page limit must be between 1 and %d";
+
     private static final ValidatorFactory factory = Validation.buildDefaultValidatorFactory();
     private static final Validator validator = factory.getValidator();
 
@@ -22,4 +25,10 @@ public class ValidationUtil {
     public static String getFirstViolationMessage(Set<? extends ConstraintViolation<?>> violations) {
         return violations.iterator().next().getMessage();
     }
-}
\ No newline at end of file
+
+    public static void validatePageLimit(int limit) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException(String.format(PAGE_SIZE_TEMPLATE, MAX_PAGE_SIZE));
+        }
+    }
+}
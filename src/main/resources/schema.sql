@@ -4,9 +4,13 @@ CREATE TABLE IF NOT EXISTS users
     email    VARCHAR(255) UNIQUE NOT NULL,
     login    VARCHAR(255) UNIQUE NOT NULL,
     name     VARCHAR(255),
-    birthday DATE                NOT NULL
+    birthday DATE                NOT NULL,
+    version  BIGINT              NOT NULL DEFAULT 0
 );
 
+ALTER TABLE users
+    ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 0;
+
 CREATE TABLE IF NOT EXISTS films
 (
     id            BIGINT PRIMARY KEY AUTO_INCREMENT,
@@ -14,9 +18,16 @@ CREATE TABLE IF NOT EXISTS films
     description   VARCHAR(255) NOT NULL,
     release_date  DATE         NOT NULL,
     duration      BIGINT       NOT NULL,
-    mpa_rating_id BIGINT
+    mpa_rating_id BIGINT,
+    like_count    BIGINT       NOT NULL DEFAULT 0,
+    version       BIGINT       NOT NULL DEFAULT 0
 );
 
+ALTER TABLE films
+    ADD COLUMN IF NOT EXISTS like_count BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE films
+    ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 0;
+
 CREATE TABLE IF NOT EXISTS friends
 (
     user_id   BIGINT,
@@ -68,3 +79,27 @@ ALTER TABLE film_genres
     ADD CONSTRAINT IF NOT EXISTS fk_film_genres_film_id FOREIGN KEY (film_id) REFERENCES films (id);
 ALTER TABLE film_genres
     ADD CONSTRAINT IF NOT EXISTS fk_film_genres_genre_id FOREIGN KEY (genre_id) REFERENCES genres (id);
+
+CREATE TABLE IF NOT EXISTS schema_migrations
+(
+    name       VARCHAR(100) PRIMARY KEY,
+    applied_at TIMESTAMP    NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+-- One-off backfill of like_count for databases created before the column existed. The marker row keeps
+-- later startups from repeating the full pass; the version bump invalidates ETags of corrected films.
+UPDATE films f
+SET like_count = (SELECT COUNT(*) FROM likes l WHERE l.film_id = f.id),
+    version    = version + 1
+WHERE NOT EXISTS (SELECT 1 FROM schema_migrations WHERE name = 'films_like_count_backfill')
+  AND like_count <> (SELECT COUNT(*) FROM likes l WHERE l.film_id = f.id);
+
+INSERT INTO schema_migrations (name)
+SELECT 'films_like_count_backfill'
+WHERE NOT EXISTS (SELECT 1 FROM schema_migrations WHERE name = 'films_like_count_backfill');
+
+CREATE INDEX IF NOT EXISTS idx_films_like_count ON films (like_count DESC, id);
+CREATE INDEX IF NOT EXISTS idx_film_genres_genre_id ON film_genres (genre_id, film_id);
+CREATE INDEX IF NOT EXISTS idx_films_release_date ON films (release_date);
+CREATE INDEX IF NOT EXISTS idx_likes_user_id ON likes (user_id, film_id);
+CREATE INDEX IF NOT EXISTS idx_friends_friend_id ON friends (friend_id, user_id);
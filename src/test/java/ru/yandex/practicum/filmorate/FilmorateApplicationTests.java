@@ -1,42 +1,154 @@
 package ru.yandex.practicum.filmorate;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zaxxer.hikari.HikariConfigMXBean;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import lombok.RequiredArgsConstructor;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.jdbc.DataSourceUnwrapper;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.json.AutoConfigureJson;
 import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.env.MockEnvironment;
 import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.controller.film.FilmController;
+import ru.yandex.practicum.filmorate.controller.user.UserController;
+import ru.yandex.practicum.filmorate.dto.film.FilmDto;
+import ru.yandex.practicum.filmorate.dto.film.FilmImportErrorDto;
+import ru.yandex.practicum.filmorate.dto.film.FilmImportResultDto;
+import ru.yandex.practicum.filmorate.exception.DuplicatedDataException;
+import ru.yandex.practicum.filmorate.exception.ErrorHandler;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.model.EntityVersion;
 import ru.yandex.practicum.filmorate.model.film.Film;
 import ru.yandex.practicum.filmorate.model.film.Genre;
+import ru.yandex.practicum.filmorate.model.film.Like;
 import ru.yandex.practicum.filmorate.model.film.Mpa;
 import ru.yandex.practicum.filmorate.model.user.User;
+import ru.yandex.practicum.filmorate.service.film.FilmDtoCache;
+import ru.yandex.practicum.filmorate.service.film.FilmService;
+import ru.yandex.practicum.filmorate.service.user.FriendService;
+import ru.yandex.practicum.filmorate.service.user.UserService;
+import ru.yandex.practicum.filmorate.storage.cache.ReferenceCacheRefresher;
+import ru.yandex.practicum.filmorate.storage.db.QueryMetrics;
 import ru.yandex.practicum.filmorate.storage.db.film.FilmDbStorage;
 import ru.yandex.practicum.filmorate.storage.db.film.GenreDbStorage;
 import ru.yandex.practicum.filmorate.storage.db.film.MpaDbStorage;
+import ru.yandex.practicum.filmorate.storage.db.statement.StatementScope;
+import ru.yandex.practicum.filmorate.storage.db.statement.StatementTrackingDataSource;
+import ru.yandex.practicum.filmorate.storage.db.statement.StatementTrackingFilter;
+import ru.yandex.practicum.filmorate.storage.db.statement.StatementTrackingPostProcessor;
+import ru.yandex.practicum.filmorate.storage.db.user.FriendDbStorage;
 import ru.yandex.practicum.filmorate.storage.db.user.UserDbStorage;
+import ru.yandex.practicum.filmorate.storage.index.AdjacencyUpdate;
+import ru.yandex.practicum.filmorate.storage.index.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.storage.index.FriendGraphIndex;
+import ru.yandex.practicum.filmorate.storage.index.IndexRefresher;
+import ru.yandex.practicum.filmorate.storage.index.TopKCounter;
+import ru.yandex.practicum.filmorate.storage.index.UserExistenceIndex;
+import ru.yandex.practicum.filmorate.util.ETagUtil;
+import ru.yandex.practicum.filmorate.util.JsonStreamUtil;
 
+import javax.sql.DataSource;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.ParameterMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Types;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.hamcrest.Matchers.not;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @JdbcTest
 @AutoConfigureTestDatabase
+@AutoConfigureJson
 @DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
 @RequiredArgsConstructor(onConstructor_ = @Autowired)
 @ComponentScan("ru.yandex.practicum.filmorate")
-@Import({FilmDbStorage.class, GenreDbStorage.class, MpaDbStorage.class, UserDbStorage.class})
+@Import({FilmDbStorage.class, GenreDbStorage.class, MpaDbStorage.class, UserDbStorage.class, FriendDbStorage.class})
 class FilmorateApplicationTests {
 
 	private final FilmDbStorage filmStorage;
 	private final GenreDbStorage genreStorage;
 	private final MpaDbStorage mpaStorage;
 	private final UserDbStorage userStorage;
+	private final FriendDbStorage friendStorage;
+	private final JdbcTemplate jdbcTemplate;
+	private final QueryMetrics queryMetrics;
+	private final ReferenceCacheRefresher referenceCacheRefresher;
+	private final UserExistenceIndex userExistenceIndex;
+	private final FilmService filmService;
+	private final UserService userService;
+	private final FriendService friendService;
+
+	// Tables up to this size, such as the reference data from data.sql, are cheaper to scan than to look up.
+	private static final int SMALL_TABLE_MAX_ROWS = 100;
+	// Rows seeded into the catalog tables before explaining, so the planner sees a catalog rather than a fixture.
+	private static final int SEEDED_CATALOG_ROWS = 1000;
+	// Queries that read a whole table by design: full listings and in-memory index rebuilds.
+	private static final Set<String> FULL_READ_QUERIES = Set.of(
+			"FilmDbStorage.FIND_ALL_QUERY",
+			"FilmDbStorage.FIND_ALL_LIKES_QUERY",
+			"FilmDbStorage.FIND_ALL_SEARCH_TEXTS_QUERY",
+			"UserDbStorage.FIND_ALL_QUERY",
+			"UserDbStorage.FIND_ALL_IDS_QUERY",
+			"FriendDbStorage.GET_ALL_FRIENDSHIPS_QUERY"
+	);
+	// Representative SQL for the `%s` placeholder of templated queries.
+	private static final Map<String, String> TEMPLATE_FILLS = Map.of(
+			"FilmDbStorage.INSERT_MANY_QUERY", "(?, ?, ?, ?, ?), (?, ?, ?, ?, ?)",
+			"FilmDbStorage.FIND_POPULAR_FILTERED_QUERY",
+			"id IN (SELECT film_id FROM film_genres WHERE genre_id = ?) AND release_date >= ? AND release_date < ?"
+	);
+	// Table scans (`PUBLIC.FILMS.tableScan */`) and index accesses with (`PUBLIC.IDX: ID = ?1`) or without a condition.
+	private static final Pattern PLAN_ACCESS = Pattern.compile("/\\* PUBLIC\\.(\\w+)(\\.tableScan)?(:|\\s*\\*/)");
+	private static final Pattern LIMIT = Pattern.compile("\\bLIMIT\\b", Pattern.CASE_INSENSITIVE);
 
 	@BeforeEach
 	public void setUp() {
@@ -66,6 +178,23 @@ class FilmorateApplicationTests {
 				.hasValueSatisfying(user -> assertThat(user).hasFieldOrPropertyWithValue("id", 1L));
 	}
 
+	@Test
+	void testGetUserByIdReturnsFreshCopies() {
+		User cached = userStorage.getUserById(1L).orElseThrow();
+		cached.setName("Changed Locally");
+		long friendId = createUser("friend@example.com", "friendUser");
+		friendStorage.addFriend(1L, friendId);
+
+		assertThat(userStorage.getUserById(1L))
+				.hasValueSatisfying(user -> {
+					assertThat(user.getName()).isEqualTo("Test User");
+					assertThat(user.getFriendsIds()).containsExactly(friendId);
+				});
+		assertThat(userStorage.existsById(friendId)).isTrue();
+		assertThat(userStorage.existsById(999L)).isFalse();
+		assertThat(userStorage.getUserById(999L)).isEmpty();
+	}
+
 	@Test
 	void testGetUsers() {
 		Collection<User> users = userStorage.getUsers();
@@ -84,6 +213,169 @@ class FilmorateApplicationTests {
 		assertThat(createdUser.getId()).isPositive();
 	}
 
+	// Friend Storage Tests
+	@Test
+	void testGetFriendsAndCommonFriends() {
+		long secondUserId = createUser("second@example.com", "secondUser");
+		long commonFriendId = createUser("common@example.com", "commonFriend");
+		friendStorage.addFriend(1L, commonFriendId);
+		friendStorage.addFriend(secondUserId, commonFriendId);
+		friendStorage.addFriend(commonFriendId, 1L);
+
+		assertThat(friendStorage.getFriends(1L, true))
+				.singleElement()
+				.satisfies(friend -> {
+					assertThat(friend.getId()).isEqualTo(commonFriendId);
+					assertThat(friend.getFriendsIds()).containsExactly(1L);
+				});
+		assertThat(friendStorage.getCommonFriends(1L, secondUserId))
+				.extracting(User::getId)
+				.containsExactly(commonFriendId);
+	}
+
+	@Test
+	void testAddFriendRejectsUnknownUser() {
+		assertThatThrownBy(() -> friendStorage.addFriend(1L, 999L))
+				.isInstanceOf(NotFoundException.class);
+	}
+
+	@Test
+	@Transactional(propagation = Propagation.NOT_SUPPORTED)
+	void testConcurrentReciprocalFriendRequestsConfirmBothRows() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			for (int pair = 0; pair < 10; pair++) {
+				long first = createUser("first" + pair + "@example.com", "first" + pair);
+				long second = createUser("second" + pair + "@example.com", "second" + pair);
+				CyclicBarrier barrier = new CyclicBarrier(2);
+				Future<?> forward = executor.submit(() -> {
+					barrier.await();
+					friendStorage.addFriend(first, second);
+					return null;
+				});
+				Future<?> backward = executor.submit(() -> {
+					barrier.await();
+					friendStorage.addFriend(second, first);
+					return null;
+				});
+				forward.get(10, TimeUnit.SECONDS);
+				backward.get(10, TimeUnit.SECONDS);
+
+				assertThat(jdbcTemplate.queryForList(
+						"SELECT status FROM friends WHERE user_id IN (?, ?) AND friend_id IN (?, ?)",
+						String.class, first, second, first, second))
+						.containsExactly("CONFIRMED", "CONFIRMED");
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	void testGetFriendRecommendationIdsRanksByMutualFriends() {
+		long friend1 = createUser("friend1@example.com", "friend1");
+		long friend2 = createUser("friend2@example.com", "friend2");
+		long candidate1 = createUser("candidate1@example.com", "candidate1");
+		long candidate2 = createUser("candidate2@example.com", "candidate2");
+		friendStorage.addFriend(1L, friend1);
+		friendStorage.addFriend(1L, friend2);
+		friendStorage.addFriend(friend1, candidate1);
+		friendStorage.addFriend(friend1, candidate2);
+		friendStorage.addFriend(friend2, candidate2);
+		friendStorage.addFriend(friend2, 1L);
+		friendStorage.addFriend(friend2, friend1);
+
+		assertThat(friendStorage.getFriendRecommendationIds(1L, 10, 100))
+				.containsExactly(candidate2, candidate1);
+		assertThat(friendStorage.getFriendRecommendationIds(1L, 1, 100))
+				.containsExactly(candidate2);
+	}
+
+	@Test
+	void testFriendVersionsChangeWithFriendships() {
+		long friendId = createUser("friend@example.com", "friendUser");
+		friendStorage.addFriend(1L, friendId);
+		String before = ETagUtil.forList("users", friendStorage.getFriendVersions(1L, false));
+
+		assertThat(ETagUtil.forList("users", friendStorage.getFriendVersions(1L, false))).isEqualTo(before);
+
+		friendStorage.addFriend(friendId, 1L);
+
+		assertThat(friendStorage.getFriendVersions(1L, false))
+				.extracting(EntityVersion::getId)
+				.containsExactly(friendId);
+		assertThat(ETagUtil.forList("users", friendStorage.getFriendVersions(1L, false))).isNotEqualTo(before);
+	}
+
+	@Test
+	void testTopKCounterOrdersByCountThenKey() {
+		TopKCounter counter = new TopKCounter(2);
+		for (long key = 1; key <= 100; key++) {
+			counter.add(key, (int) (key % 7));
+		}
+
+		assertThat(counter.get(13L)).isEqualTo(6);
+		assertThat(counter.topK(3)).containsExactly(6L, 13L, 20L);
+	}
+
+	@Test
+	void testFriendGraphIndexIntersectsSortedFriends() {
+		FriendGraphIndex index = new FriendGraphIndex(true);
+		FriendGraphIndex.Builder builder = index.builder();
+		builder.add(1L, 2L);
+		builder.add(1L, 3L);
+		builder.add(1L, 5L);
+		builder.add(4L, 3L);
+		builder.add(4L, 5L);
+		builder.publish();
+
+		AdjacencyUpdate update = index.update(new long[]{1L, 4L});
+		update.add(1L, 2L);
+		update.add(1L, 3L);
+		update.add(4L, 1L);
+		update.add(4L, 3L);
+		update.add(4L, 5L);
+		update.apply();
+
+		assertThat(index.getCommonFriends(1L, 4L)).containsExactly(3L);
+		assertThat(index.getFriends(4L)).containsExactly(1L, 3L, 5L);
+		assertThat(index.getFriendsCount(1L)).isEqualTo(2);
+		assertThat(index.getConfirmedFriends(1L)).isEmpty();
+	}
+
+	@Test
+	void testIndexRefresherRepeatsRefreshesThatOverlapRebuild() {
+		List<Long> reloadedKeys = new ArrayList<>();
+		IndexRefresher refresher = new IndexRefresher(keys -> Arrays.stream(keys).forEach(reloadedKeys::add));
+
+		refresher.rebuild(() -> refresher.refresh(7L, 8L));
+		refresher.refresh(9L);
+
+		assertThat(reloadedKeys).containsExactlyInAnyOrder(7L, 8L, 7L, 8L, 9L);
+	}
+
+	@Test
+	void testUncommittedUserIsVisibleOnlyToItsTransaction() throws Exception {
+		long userId = createUser("uncommitted@example.com", "uncommitted");
+
+		assertThat(userStorage.existsById(userId)).isTrue();
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			assertThat(executor.submit(() -> userStorage.existsById(userId)).get(10, TimeUnit.SECONDS)).isFalse();
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private long createUser(String email, String login) {
+		User user = new User();
+		user.setEmail(email);
+		user.setLogin(login);
+		user.setName(login);
+		user.setBirthday(LocalDate.of(1990, 1, 1));
+		return userStorage.createUser(user).getId();
+	}
+
 	// Film Storage Tests
 	@Test
 	void testFindFilmById() {
@@ -99,6 +391,99 @@ class FilmorateApplicationTests {
 		assertThat(films).isNotEmpty();
 	}
 
+	@Test
+	void testGetFilmsDoesNotMultiplyLikesByGenres() {
+		filmStorage.addLike(1L, 1L);
+
+		assertThat(filmStorage.getFilms())
+				.singleElement()
+				.satisfies(film -> {
+					assertThat(film.getLikes()).isEqualTo(1L);
+					assertThat(film.getGenreIds()).containsExactly(1L, 2L);
+				});
+	}
+
+	@Test
+	void testGetFilmsPageUsesKeysetCursor() {
+		long secondFilmId = createFilm("Second Film");
+
+		assertThat(filmStorage.getFilmsPage(0, 1))
+				.singleElement()
+				.satisfies(film -> assertThat(film.getGenreIds()).containsExactly(1L, 2L));
+		assertThat(filmStorage.getFilmsPage(1L, 10))
+				.extracting(Film::getId)
+				.containsExactly(secondFilmId);
+		try (Stream<Film> films = filmStorage.streamFilms()) {
+			assertThat(films.map(Film::getId)).containsExactly(1L, secondFilmId);
+		}
+	}
+
+	@Test
+	void testJsonStreamClosesSourceWhenClientDisconnects() {
+		AtomicBoolean closed = new AtomicBoolean();
+		Stream<Film> films = filmStorage.streamFilms().onClose(() -> closed.set(true));
+		OutputStream disconnected = new OutputStream() {
+			@Override
+			public void write(int b) throws IOException {
+				throw new IOException("Broken pipe");
+			}
+		};
+
+		assertThatThrownBy(() -> JsonStreamUtil.writeArray(new ObjectMapper().findAndRegisterModules(),
+				disconnected, films))
+				.isInstanceOf(IOException.class);
+		assertThat(closed).isTrue();
+	}
+
+	@Test
+	void testImportFilmsDiscardsUnsavedRecordsOfTruncatedUpload() throws IOException {
+		String record = """
+				{"name": "Imported", "description": "Description", "releaseDate": "2001-01-01",
+				 "duration": 100, "mpa": {"id": 1}}
+				""";
+		String truncated = "[" + record + "," + record + ", {\"name\": \"Cut";
+
+		FilmImportResultDto result = filmService.importFilms(
+				new ByteArrayInputStream(truncated.getBytes(StandardCharsets.UTF_8)));
+
+		assertThat(result.isAborted()).isTrue();
+		assertThat(result.getReceived()).isEqualTo(3);
+		assertThat(result.getImported()).isZero();
+		assertThat(result.getFailed()).isEqualTo(3);
+		assertThat(result.getErrors())
+				.extracting(FilmImportErrorDto::getRecord)
+				.containsExactlyInAnyOrder(1L, 2L, 3L);
+		assertThat(filmStorage.getFilms()).hasSize(1);
+	}
+
+	@Test
+	void testCreateFilmsInsertsBatch() {
+		Film first = new Film();
+		first.setName("First Imported Film");
+		first.setDescription("First Description");
+		first.setReleaseDate(LocalDate.of(2001, 1, 1));
+		first.setDuration(100L);
+		first.setMpa(new Mpa(1L, "G"));
+		first.setGenreIds(List.of(3L));
+		Film second = new Film();
+		second.setName("Second Imported Film");
+		second.setDescription("Second Description");
+		second.setReleaseDate(LocalDate.of(2002, 2, 2));
+		second.setDuration(110L);
+		second.setMpa(new Mpa(2L, "PG"));
+		second.setGenreIds(List.of());
+
+		List<Film> createdFilms = filmStorage.createFilms(List.of(first, second));
+
+		assertThat(createdFilms)
+				.extracting(Film::getId)
+				.doesNotContainNull()
+				.doesNotHaveDuplicates();
+		assertThat(genreStorage.getGenresByFilmId(first.getId()))
+				.extracting(Genre::getId)
+				.containsExactly(3L);
+	}
+
 	@Test
 	void testCreateFilm() {
 		Film newFilm = new Film();
@@ -113,6 +498,517 @@ class FilmorateApplicationTests {
 		assertThat(createdFilm.getId()).isPositive();
 	}
 
+	@Test
+	void testAddLikeUpdatesPopularFilms() {
+		long secondFilmId = createFilm("Second Film");
+
+		filmStorage.addLike(secondFilmId, 1L);
+
+		assertThat(filmStorage.getFilmById(secondFilmId))
+				.hasValueSatisfying(film -> assertThat(film.getLikes()).isEqualTo(1L));
+		assertThat(filmStorage.getPopularFilms(10, null, null))
+				.extracting(Film::getId)
+				.containsExactly(secondFilmId, 1L);
+
+		filmStorage.removeLike(secondFilmId, 1L);
+
+		assertThat(filmStorage.getFilmById(secondFilmId))
+				.hasValueSatisfying(film -> assertThat(film.getLikes()).isZero());
+	}
+
+	@Test
+	void testRepeatedLikeConflictsAndMissingLikeIsNotFound() {
+		long filmId = createFilm("Liked Film");
+		filmStorage.addLike(filmId, 1L);
+
+		assertThatThrownBy(() -> filmStorage.addLike(filmId, 1L))
+				.isInstanceOf(DuplicatedDataException.class)
+				.satisfies(e -> assertThat(new ErrorHandler()
+						.handleDuplicatedDataException((DuplicatedDataException) e).getStatusCode())
+						.isEqualTo(HttpStatus.CONFLICT));
+
+		filmStorage.removeLike(filmId, 1L);
+
+		assertThatThrownBy(() -> filmStorage.removeLike(filmId, 1L))
+				.isInstanceOf(NotFoundException.class);
+	}
+
+	@Test
+	void testGetPopularFilmsFiltersByGenreAndYear() {
+		long secondFilmId = createFilm("Second Film", LocalDate.of(2022, 12, 31), List.of(2L));
+		filmStorage.addLike(secondFilmId, 1L);
+
+		assertThat(filmStorage.getPopularFilms(10, 1L, null))
+				.extracting(Film::getId)
+				.containsExactly(1L);
+		assertThat(filmStorage.getPopularFilms(10, 2L, null))
+				.extracting(Film::getId)
+				.containsExactly(secondFilmId, 1L);
+		assertThat(filmStorage.getPopularFilms(10, null, 2022))
+				.extracting(Film::getId)
+				.containsExactly(secondFilmId);
+		assertThat(filmStorage.getPopularFilms(10, 1L, 2020))
+				.extracting(Film::getId)
+				.containsExactly(1L);
+		assertThat(filmStorage.getPopularFilms(10, 1L, 2022)).isEmpty();
+	}
+
+	@Test
+	void testFilmVersionChangesOnEveryWrite() {
+		long initial = filmStorage.getFilmVersion(1L).orElseThrow();
+
+		filmStorage.addLike(1L, 1L);
+		long liked = filmStorage.getFilmVersion(1L).orElseThrow();
+		Film film = filmStorage.getFilmById(1L).orElseThrow();
+		film.setGenreIds(List.of(3L));
+		filmStorage.updateFilmGenres(film);
+		long regenred = filmStorage.getFilmVersion(1L).orElseThrow();
+		filmStorage.updateFilmGenres(film);
+
+		assertThat(liked).isGreaterThan(initial);
+		assertThat(regenred).isGreaterThan(liked);
+		assertThat(filmStorage.getFilmVersion(1L)).contains(regenred);
+		assertThat(filmStorage.getPopularFilmVersions(10, null, null))
+				.containsExactly(new EntityVersion(1L, regenred));
+		assertThat(filmStorage.getFilmVersion(999L)).isEmpty();
+	}
+
+	@Test
+	void testUpdateFilmGenresAppliesDiff() {
+		Film film = filmStorage.getFilmById(1L).orElseThrow();
+		film.setGenreIds(List.of(3L, 2L, 3L));
+
+		filmStorage.updateFilmGenres(film);
+
+		assertThat(film.getGenreIds()).containsExactly(2L, 3L);
+		assertThat(genreStorage.getGenresByFilmId(1L))
+				.extracting(Genre::getId)
+				.containsExactly(2L, 3L);
+	}
+
+	@Test
+	void testAddLikeRejectsUnknownIds() {
+		assertThatThrownBy(() -> filmStorage.addLike(1L, 999L))
+				.isInstanceOf(NotFoundException.class)
+				.hasMessageContaining("User");
+		assertThatThrownBy(() -> filmStorage.addLike(999L, 1L))
+				.isInstanceOf(NotFoundException.class)
+				.hasMessageContaining("Film");
+	}
+
+	@Test
+	void testAddLikeMapsForeignKeyViolationToNotFound() {
+		// The index still lists a user whose row is gone, so only the foreign key rejects the like.
+		userExistenceIndex.add(500L);
+
+		assertThatThrownBy(() -> filmStorage.addLike(1L, 500L))
+				.isInstanceOf(NotFoundException.class)
+				.hasMessageContaining("User with id 500");
+		assertThat(filmStorage.getFilmById(1L))
+				.hasValueSatisfying(film -> assertThat(film.getLikes()).isZero());
+	}
+
+	@Test
+	void testApplyLikesIsIdempotent() {
+		filmStorage.applyLikes(List.of(new Like(1L, 1L), new Like(1L, 999L)), List.of());
+		filmStorage.applyLikes(List.of(new Like(1L, 1L)), List.of());
+
+		assertThat(filmStorage.getFilmById(1L))
+				.hasValueSatisfying(film -> assertThat(film.getLikes()).isEqualTo(1L));
+
+		filmStorage.applyLikes(List.of(), List.of(new Like(1L, 1L), new Like(1L, 1L)));
+
+		assertThat(filmStorage.getFilmById(1L))
+				.hasValueSatisfying(film -> assertThat(film.getLikes()).isZero());
+	}
+
+	@Test
+	void testGetRecommendedFilmsRanksBySimilarUsers() {
+		long film2 = createFilm("Second Film");
+		long film3 = createFilm("Third Film");
+		long film4 = createFilm("Fourth Film");
+		long user2 = createUser("second@example.com", "secondUser");
+		long user3 = createUser("third@example.com", "thirdUser");
+		filmStorage.applyLikes(List.of(
+				new Like(1L, 1L), new Like(film2, 1L),
+				new Like(1L, user2), new Like(film2, user2), new Like(film3, user2),
+				new Like(1L, user3), new Like(film4, user3)
+		), List.of());
+		filmStorage.rebuildLikeMatrix();
+
+		assertThat(filmStorage.getRecommendedFilms(1L, 10))
+				.extracting(Film::getId)
+				.containsExactly(film3, film4);
+		assertThat(filmStorage.getRecommendedFilms(user3, 10))
+				.extracting(Film::getId)
+				.containsExactly(film2, film3);
+		assertThatThrownBy(() -> filmStorage.getRecommendedFilms(999L, 10))
+				.isInstanceOf(NotFoundException.class);
+	}
+
+	@Test
+	void testSearchFilmsRanksByRelevanceThenLikes() {
+		long matrix = createFilm("Матрица");
+		long reloaded = createFilm("Матрица: перезагрузка");
+		long documentary = createFilm("Об актёрах");
+		filmStorage.applyLikes(List.of(new Like(reloaded, 1L)), List.of());
+		filmStorage.rebuildIndexes();
+
+		assertThat(filmStorage.searchFilms("МАТРИЦА", 10))
+				.extracting(Film::getId)
+				.containsExactly(reloaded, matrix);
+		assertThat(filmStorage.searchFilms("матрица перезагрузка", 10))
+				.extracting(Film::getId)
+				.containsExactly(reloaded, matrix);
+		assertThat(filmStorage.searchFilms("актеров", 10)).isEmpty();
+		assertThat(filmStorage.searchFilms("Актерах", 10))
+				.extracting(Film::getId)
+				.containsExactly(documentary);
+		assertThat(filmStorage.searchFilms("description", 2))
+				.extracting(Film::getId)
+				.containsExactly(reloaded, 1L);
+	}
+
+	@Test
+	void testFilmSearchIndexUpdatesBlockedPostings() {
+		FilmSearchIndex index = new FilmSearchIndex();
+		FilmSearchIndex.Builder builder = index.builder();
+		builder.add(1L, "Alpha", null);
+		builder.add(5000L, "Alpha Beta", null);
+		builder.publish();
+
+		index.putFilm(3000L, "Alpha", null);
+		index.putFilm(5000L, "Beta", null);
+		index.putFilm(1L, "Gamma", null);
+
+		assertThat(index.search("alpha", 10, filmId -> 0)).containsExactly(3000L);
+		assertThat(index.search("beta", 10, filmId -> 0)).containsExactly(5000L);
+		assertThat(index.search("gamma beta", 10, filmId -> 0)).containsExactly(1L, 5000L);
+	}
+
+	private long createFilm(String name) {
+		return createFilm(name, LocalDate.of(2020, 1, 1), List.of());
+	}
+
+	private long createFilm(String name, LocalDate releaseDate, List<Long> genreIds) {
+		Film film = new Film();
+		film.setName(name);
+		film.setDescription("Description");
+		film.setReleaseDate(releaseDate);
+		film.setDuration(100L);
+		film.setMpa(new Mpa(1L, "G"));
+		film.setGenreIds(genreIds);
+		return filmStorage.createFilm(film).getId();
+	}
+
+	@Test
+	void testFilmDtoCacheSkipsLoadsRacingWithInvalidation() {
+		FilmDtoCache cache = new FilmDtoCache(1);
+		FilmDto first = new FilmDto();
+		first.setId(1L);
+		FilmDto second = new FilmDto();
+		second.setId(2L);
+
+		assertThat(cache.get(1L, () -> {
+			cache.invalidate(1L);
+			return Optional.of(first);
+		})).contains(first);
+		assertThat(cache.size()).isZero();
+
+		cache.get(1L, () -> Optional.of(first));
+		cache.get(2L, () -> Optional.of(second));
+		assertThat(cache.get(2L, Optional::empty)).contains(second);
+		assertThat(cache.get(1L, Optional::empty)).isEmpty();
+	}
+
+	// Query Metrics Tests
+	@Test
+	void testQueryMetricsRecordsNamedQueries() {
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		queryMetrics.bindTo(registry);
+
+		filmStorage.getFilmById(1L);
+		filmStorage.getFilmById(999L);
+		assertThatThrownBy(() -> filmStorage.addLike(999L, 1L))
+				.isInstanceOf(NotFoundException.class);
+
+		assertThat(registry.get(QueryMetrics.QUERY_TIMER)
+				.tag("query", "FilmDbStorage.FIND_BY_ID_QUERY")
+				.timer()
+				.count()).isEqualTo(2);
+		assertThat(registry.get(QueryMetrics.QUERY_ROWS)
+				.tag("query", "FilmDbStorage.FIND_BY_ID_QUERY")
+				.summary()
+				.totalAmount()).isEqualTo(1);
+		assertThat(registry.get(QueryMetrics.QUERY_ERRORS)
+				.tag("query", "FilmDbStorage.INSERT_LIKES_QUERY")
+				.counter()
+				.count()).isEqualTo(1);
+		assertThat(registry.get(QueryMetrics.QUERY_TIMER)
+				.tag("query", "FilmDbStorage.FIND_BY_ID_QUERY")
+				.timer()
+				.takeSnapshot()
+				.histogramCounts()).isNotEmpty();
+	}
+
+	@Test
+	void testQueryMetricsTimesStreamsUntilClosed() {
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		queryMetrics.bindTo(registry);
+		createFilm("Streamed Film");
+
+		try (Stream<Film> films = filmStorage.streamFilms()) {
+			assertThat(films.toList()).hasSize(2);
+			assertThat(registry.find(QueryMetrics.QUERY_TIMER)
+					.tag("query", "FilmDbStorage.FIND_ALL_QUERY")
+					.timer()
+					.count()).isZero();
+		}
+
+		assertThat(registry.get(QueryMetrics.QUERY_TIMER)
+				.tag("query", "FilmDbStorage.FIND_ALL_QUERY")
+				.timer()
+				.count()).isEqualTo(1);
+		assertThat(registry.get(QueryMetrics.QUERY_ROWS)
+				.tag("query", "FilmDbStorage.FIND_ALL_QUERY")
+				.summary()
+				.totalAmount()).isEqualTo(2);
+	}
+
+	// Statement Tracking Tests
+	@Test
+	void testStatementScopeDetectsRepeatedStatements() {
+		try (StatementScope scope = StatementScope.open()) {
+			filmStorage.getFilms();
+			scope.assertStatementCountAtMost(1);
+		}
+
+		try (StatementScope scope = StatementScope.open()) {
+			for (int i = 0; i < 3; i++) {
+				filmStorage.getFilmById(1L);
+			}
+			assertThat(scope.getMaxRepeats()).isEqualTo(3);
+			assertThatThrownBy(() -> scope.assertRepeatsAtMost(2))
+					.isInstanceOf(AssertionError.class)
+					.hasMessageContaining("ran 3 times");
+		}
+	}
+
+	@Test
+	void testGetUserByIdAnswersNotModifiedWithETag() throws Exception {
+		MockMvc mvc = MockMvcBuilders.standaloneSetup(new UserController(userService, friendService, filmService))
+				.build();
+
+		String eTag = mvc.perform(get("/users/1"))
+				.andExpect(status().isOk())
+				.andReturn()
+				.getResponse()
+				.getHeader(HttpHeaders.ETAG);
+		assertThat(eTag).isNotBlank();
+
+		mvc.perform(get("/users/1").header(HttpHeaders.IF_NONE_MATCH, eTag))
+				.andExpect(status().isNotModified())
+				.andExpect(header().string(HttpHeaders.ETAG, eTag));
+
+		User user = userStorage.getUserById(1L).orElseThrow();
+		user.setName("Renamed");
+		userStorage.updateUser(user);
+
+		mvc.perform(get("/users/1").header(HttpHeaders.IF_NONE_MATCH, eTag))
+				.andExpect(status().isOk())
+				.andExpect(header().string(HttpHeaders.ETAG, not(eTag)));
+	}
+
+	@Test
+	void testStatementTrackingCountsStreamedResponseBodies() throws Exception {
+		MockMvc mvc = MockMvcBuilders.standaloneSetup(new FilmController(filmService))
+				.addFilters(new StatementTrackingFilter(50, 10))
+				.build();
+
+		MvcResult result = mvc.perform(get("/films"))
+				.andExpect(request().asyncStarted())
+				.andReturn();
+		result.getAsyncResult(TimeUnit.SECONDS.toMillis(10));
+		mvc.perform(asyncDispatch(result))
+				.andExpect(status().isOk());
+
+		StatementScope scope = (StatementScope) result.getRequest()
+				.getAttribute(StatementTrackingFilter.SCOPE_ATTRIBUTE);
+		assertThat(scope.getStatementCount()).isEqualTo(1);
+	}
+
+	@Test
+	void testTrackedDataSourceKeepsHikariPoolMetrics() throws Exception {
+		try (HikariDataSource hikari = new HikariDataSource()) {
+			hikari.setJdbcUrl("jdbc:h2:mem:tracked-pool");
+			DataSource tracked = (DataSource) new StatementTrackingPostProcessor(new MockEnvironment())
+					.postProcessAfterInitialization(hikari, "dataSource");
+			SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+			// Spring Boot reaches the pool behind any DataSource bean through this unwrapper for metrics and health.
+			HikariDataSource pool = DataSourceUnwrapper.unwrap(tracked, HikariConfigMXBean.class,
+					HikariDataSource.class);
+			assertThat(tracked).isInstanceOf(StatementTrackingDataSource.class);
+			assertThat(pool).isSameAs(hikari);
+			assertThat(tracked.unwrap(HikariDataSource.class)).isSameAs(hikari);
+
+			pool.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(registry));
+			try (Connection connection = tracked.getConnection()) {
+				assertThat(connection.isValid(1)).isTrue();
+			}
+			assertThat(registry.find("hikaricp.connections").gauge()).isNotNull();
+			assertThat(registry.find("hikaricp.connections.active").gauge()).isNotNull();
+		}
+	}
+
+	// Query Plan Tests
+	@Test
+	void testStorageQueriesDoNotScanLargeTables() throws IllegalAccessException {
+		seedCatalog();
+		Map<String, Long> rowsByTable = new HashMap<>();
+		for (String table : jdbcTemplate.queryForList(
+				"SELECT table_name FROM information_schema.tables WHERE table_schema = 'PUBLIC'", String.class)) {
+			rowsByTable.put(table, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + table, Long.class));
+		}
+		Map<String, String> tablesByIndex = new HashMap<>();
+		jdbcTemplate.query("""
+				SELECT index_name, table_name
+				FROM information_schema.indexes
+				WHERE table_schema = 'PUBLIC'
+				""", (ResultSet resultSet) -> {
+			tablesByIndex.put(resultSet.getString("index_name"), resultSet.getString("table_name"));
+		});
+
+		List<String> problems = new ArrayList<>();
+		for (Class<?> storageClass : List.of(FilmDbStorage.class, GenreDbStorage.class, MpaDbStorage.class,
+				UserDbStorage.class, FriendDbStorage.class)) {
+			for (Field field : storageClass.getDeclaredFields()) {
+				if (!isQueryConstant(field)) {
+					continue;
+				}
+				String name = storageClass.getSimpleName() + "." + field.getName();
+				field.setAccessible(true);
+				String query = (String) field.get(null);
+				if (query.contains("%s")) {
+					String fill = TEMPLATE_FILLS.get(name);
+					if (fill == null) {
+						problems.add(name + " is a template without an entry in TEMPLATE_FILLS");
+						continue;
+					}
+					query = query.formatted(fill);
+				}
+
+				String plan = explain(query);
+				Set<String> scannedTables = findScannedTables(plan, tablesByIndex, rowsByTable,
+						LIMIT.matcher(query).find());
+				if (FULL_READ_QUERIES.contains(name)) {
+					if (scannedTables.isEmpty()) {
+						problems.add(name + " is listed as a full read but uses an index:\n" + plan);
+					}
+				} else if (!scannedTables.isEmpty()) {
+					problems.add(name + " scans " + scannedTables.stream()
+							.map(table -> table + " (" + rowsByTable.get(table) + " rows)")
+							.toList() + ":\n" + plan);
+				}
+			}
+		}
+
+		assertThat(problems).isEmpty();
+	}
+
+	private static boolean isQueryConstant(Field field) {
+		return Modifier.isStatic(field.getModifiers())
+				&& field.getType() == String.class
+				&& field.getName().endsWith("_QUERY");
+	}
+
+	/**
+	 * Large tables the plan reads in full: table scans, and indexes walked without a condition unless
+	 * the walk only serves the order of a limited query. A table is small when it holds rows, but no more
+	 * than `SMALL_TABLE_MAX_ROWS`; an empty table proves nothing, so it must be seeded to pass.
+	 */
+	private static Set<String> findScannedTables(String plan, Map<String, String> tablesByIndex,
+			Map<String, Long> rowsByTable, boolean limited) {
+		Set<String> tables = new HashSet<>();
+		Matcher matcher = PLAN_ACCESS.matcher(plan);
+		while (matcher.find()) {
+			boolean tableScan = matcher.group(2) != null;
+			boolean unbounded = matcher.group(3).endsWith("*/");
+			String table = tableScan ? matcher.group(1) : tablesByIndex.get(matcher.group(1));
+			if ((tableScan || unbounded && !limited) && table != null) {
+				long rows = rowsByTable.getOrDefault(table, 0L);
+				if (rows == 0 || rows > SMALL_TABLE_MAX_ROWS) {
+					tables.add(table);
+				}
+			}
+		}
+		return tables;
+	}
+
+	private void seedCatalog() {
+		jdbcTemplate.update("""
+				INSERT INTO users (email, login, name, birthday)
+				SELECT 'seed' || x || '@example.com', 'seed' || x, 'Seed', DATE '1990-01-01'
+				FROM SYSTEM_RANGE(1, ?)
+				""", SEEDED_CATALOG_ROWS);
+		jdbcTemplate.update("""
+				INSERT INTO films (name, description, release_date, duration, mpa_rating_id)
+				SELECT 'Seed ' || x, 'Description', DATEADD(DAY, x, DATE '2000-01-01'), 100, 1
+				FROM SYSTEM_RANGE(1, ?)
+				""", SEEDED_CATALOG_ROWS);
+		// Seeded users and films take ids 2 to SEEDED_CATALOG_ROWS + 1, after the fixture rows.
+		jdbcTemplate.update("INSERT INTO likes (film_id, user_id) SELECT x + 1, x + 1 FROM SYSTEM_RANGE(1, ?)",
+				SEEDED_CATALOG_ROWS);
+		jdbcTemplate.update("""
+				INSERT INTO friends (user_id, friend_id, status)
+				SELECT x + 1, MOD(x, ?) + 2, 'UNCONFIRMED'
+				FROM SYSTEM_RANGE(1, ?)
+				""", SEEDED_CATALOG_ROWS, SEEDED_CATALOG_ROWS);
+		jdbcTemplate.update("""
+				INSERT INTO film_genres (film_id, genre_id)
+				SELECT x + 1, MOD(x, 6) + 1
+				FROM SYSTEM_RANGE(1, ?)
+				""", SEEDED_CATALOG_ROWS);
+		jdbcTemplate.execute("ANALYZE");
+	}
+
+	private String explain(String query) {
+		return jdbcTemplate.execute((Connection connection) -> {
+			try (PreparedStatement statement = connection.prepareStatement("EXPLAIN " + query)) {
+				ParameterMetaData metaData = statement.getParameterMetaData();
+				int position = -1;
+				for (int idx = 1; idx <= metaData.getParameterCount(); idx++) {
+					position = query.indexOf('?', position + 1);
+					String context = query.substring(0, position).stripTrailing().toUpperCase();
+					statement.setObject(idx, representativeValue(context, metaData.getParameterType(idx)));
+				}
+				try (ResultSet resultSet = statement.executeQuery()) {
+					resultSet.next();
+					return resultSet.getString(1);
+				}
+			}
+		});
+	}
+
+	/**
+	 * H2 reports parameters it cannot type, such as `LIMIT ?` or `ANY(?)`, as VARCHAR, so those are
+	 * recognized by the SQL in front of them.
+	 */
+	private static Object representativeValue(String context, int sqlType) {
+		if (context.endsWith("ANY(")) {
+			return new Long[]{1L, 2L};
+		}
+		if (context.endsWith("LIMIT")) {
+			return 10;
+		}
+		return switch (sqlType) {
+			case Types.VARCHAR, Types.CHAR -> "value";
+			case Types.DATE -> Date.valueOf(LocalDate.of(2020, 1, 1));
+			case Types.BOOLEAN -> true;
+			default -> 1L;
+		};
+	}
+
 	// Genre Storage Tests
 	@Test
 	void testGetAllGenres() {
@@ -128,6 +1024,14 @@ class FilmorateApplicationTests {
 				.hasValueSatisfying(genre -> assertThat(genre).hasFieldOrPropertyWithValue("id", 1L));
 	}
 
+	@Test
+	void testGetGenresByFilmIds() {
+		Map<Long, List<Genre>> genresByFilmId = genreStorage.getGenresByFilmIds(List.of(1L));
+		assertThat(genresByFilmId.get(1L))
+				.extracting(Genre::getId)
+				.containsExactly(1L, 2L);
+	}
+
 	// MPA Storage Tests
 	@Test
 	void testGetMpaById() {
@@ -142,4 +1046,18 @@ class FilmorateApplicationTests {
 		Collection<Mpa> mpas = mpaStorage.getMpas();
 		assertThat(mpas).isNotEmpty();
 	}
+
+	@Test
+	void testReferenceCacheRefreshPicksUpChangedRows() {
+		jdbcTemplate.update("UPDATE mpa SET name = ? WHERE id = ?", "General", 1L);
+		jdbcTemplate.update("UPDATE genres SET name = ? WHERE id = ?", "Comedy Drama", 1L);
+		assertThat(mpaStorage.getMpaById(1L)).hasValueSatisfying(mpa -> assertThat(mpa.getName()).isEqualTo("G"));
+
+		referenceCacheRefresher.refresh();
+
+		assertThat(mpaStorage.getMpaById(1L))
+				.hasValueSatisfying(mpa -> assertThat(mpa.getName()).isEqualTo("General"));
+		assertThat(genreStorage.getGenreById(1L))
+				.hasValueSatisfying(genre -> assertThat(genre.getName()).isEqualTo("Comedy Drama"));
+	}
 }
\ No newline at end of file
@@ -0,0 +1,114 @@
+package ru.yandex.practicum.filmorate.support;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Synthetic films, users, likes and friendships for benchmarks and load tests.
+ *
+ * Every user likes `likesPerUser` films and befriends `friendsPerUser` random users. Film popularity
+ * is skewed so that a few films collect a large share of the likes, as in real data. One spare film
+ * and one spare user are inserted on top of the requested counts and never get likes or friends, so
+ * that write workloads can toggle them without changing the rest of the data. Rows are inserted with
+ * plain JDBC batches into an empty database; callers rebuild in-memory indexes afterwards.
+ */
+public final class SyntheticDataset {
+    private static final int GENRES = 6;
+    private static final int MPA_RATINGS = 5;
+    private static final int BATCH_SIZE = 1_000;
+
+    private final int films;
+    private final int users;
+    private final int likesPerUser;
+    private final int friendsPerUser;
+
+    public SyntheticDataset(int films, int users, int likesPerUser, int friendsPerUser) {
+        this.films = films;
+        this.users = users;
+        this.likesPerUser = likesPerUser;
+        this.friendsPerUser = friendsPerUser;
+    }
+
+    public long spareFilmId() {
+        return films + 1L;
+    }
+
+    public long spareUserId() {
+        return users + 1L;
+    }
+
+    public void seed(JdbcTemplate jdbc, SplittableRandom random) {
+        List<Object[]> filmRows = new ArrayList<>();
+        List<Object[]> genreRows = new ArrayList<>();
+        for (long filmId = 1; filmId <= spareFilmId(); filmId++) {
+            Date releaseDate = Date.valueOf(LocalDate.of(1950, 1, 1).plusDays(random.nextInt(27_000)));
+            filmRows.add(new Object[]{"Film " + filmId, "Synthetic film number " + filmId, releaseDate,
+                    60 + random.nextInt(120), 1 + random.nextInt(MPA_RATINGS)});
+            int genre = 1 + random.nextInt(GENRES);
+            genreRows.add(new Object[]{filmId, genre});
+            if (random.nextBoolean()) {
+                genreRows.add(new Object[]{filmId, genre % GENRES + 1});
+            }
+        }
+        batchInsert(jdbc, """
+                INSERT INTO films (name, description, release_date, duration, mpa_rating_id)
+                VALUES (?, ?, ?, ?, ?);
+                """, filmRows);
+        batchInsert(jdbc, "INSERT INTO film_genres (film_id, genre_id) VALUES (?, ?);", genreRows);
+
+        List<Object[]> userRows = new ArrayList<>();
+        for (long userId = 1; userId <= spareUserId(); userId++) {
+            userRows.add(new Object[]{"user" + userId + "@example.com", "user" + userId, "User " + userId,
+                    Date.valueOf(LocalDate.of(1970, 1, 1).plusDays(random.nextInt(15_000)))});
+        }
+        batchInsert(jdbc, "INSERT INTO users (email, login, name, birthday) VALUES (?, ?, ?, ?);", userRows);
+
+        List<Object[]> likeRows = new ArrayList<>();
+        List<Object[]> friendRows = new ArrayList<>();
+        for (long userId = 1; userId <= users; userId++) {
+            for (long filmId : distinct(random, likesPerUser, films, true)) {
+                likeRows.add(new Object[]{filmId, userId});
+            }
+            for (long friendId : distinct(random, friendsPerUser, users, false)) {
+                if (friendId != userId) {
+                    friendRows.add(new Object[]{userId, friendId});
+                }
+            }
+        }
+        batchInsert(jdbc, "INSERT INTO likes (film_id, user_id) VALUES (?, ?);", likeRows);
+        batchInsert(jdbc, "INSERT INTO friends (user_id, friend_id, status) VALUES (?, ?, 'CONFIRMED');",
+                friendRows);
+        jdbc.update("""
+                UPDATE films f
+                SET like_count = (SELECT COUNT(*) FROM likes l WHERE l.film_id = f.id);
+                """);
+    }
+
+    private static void batchInsert(JdbcTemplate jdbc, String query, List<Object[]> rows) {
+        for (int from = 0; from < rows.size(); from += BATCH_SIZE) {
+            jdbc.batchUpdate(query, rows.subList(from, Math.min(from + BATCH_SIZE, rows.size())));
+        }
+    }
+
+    /**
+     * Draws `count` IDs from `1..bound` and returns the distinct ones in ascending order. Skewed draws
+     * favour small IDs.
+     */
+    private static long[] distinct(SplittableRandom random, int count, int bound, boolean skewed) {
+        long[] ids = new long[count];
+        for (int idx = 0; idx < count; idx++) {
+            double uniform = random.nextDouble();
+            ids[idx] = 1 + (long) (bound * (skewed ? uniform * uniform * uniform : uniform));
+        }
+        return Arrays.stream(ids)
+                .sorted()
+                .distinct()
+                .toArray();
+    }
+}